@@ -0,0 +1,210 @@
+package org.jenkinsci.extension_indexer;
+
+import org.apache.commons.io.FileUtils;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Runs the whole indexer against a {@link FakeRepository}, once for each number of threads, and reports how many
+ * plugins per minute it got through, how much memory it used at most and how much temporary disk space it used
+ * at most.
+ * <p>
+ * Unlike the JMH benchmarks, this covers downloading, dependency resolution and the pipeline as a whole.
+ * Every run is a separate JVM with a fresh local repository and temporary directory, so runs don't share caches.
+ * The peak memory is the resident set size, which is only available on Linux.
+ */
+public class EndToEndBenchmark {
+    @Option(name="-plugins",usage="Number of plugins in the fake update center")
+    public int plugins = 100;
+
+    @Option(name="-threads",usage="Comma separated numbers of compile and resolve threads to run with, twice as many fetch threads are used")
+    public String threads = "1,2,4,8";
+
+    @Option(name="-jvmArgs",usage="Space separated options for the JVMs running the indexer, like -Xmx2g")
+    public String jvmArgs = "";
+
+    @Option(name="-fullAnalysis",usage="Run the indexer with -fullAnalysis")
+    public boolean fullAnalysis;
+
+    @Option(name="-workDir",usage="Directory to generate the repository and run the indexer in, removed afterwards unless -keep is given")
+    public File workDir;
+
+    @Option(name="-keep",usage="Keep the work directory, with the output, logs and reports of every run")
+    public boolean keep;
+
+    @Option(name="-rff",usage="Write the results to this JSON file")
+    public File resultFile;
+
+    public static void main(String[] args) throws Exception {
+        EndToEndBenchmark app = new EndToEndBenchmark();
+        CmdLineParser p = new CmdLineParser(app);
+        p.parseArgument(args);
+        app.run();
+    }
+
+    /**
+     * What one run measured.
+     */
+    static final class Result {
+        final int threads;
+        final long wallNanos;
+        final int plugins;
+        /**
+         * Peak resident set size in bytes, or -1 if not available.
+         */
+        final long peakRss;
+        final long peakTmp;
+
+        Result(int threads, long wallNanos, int plugins, long peakRss, long peakTmp) {
+            this.threads = threads;
+            this.wallNanos = wallNanos;
+            this.plugins = plugins;
+            this.peakRss = peakRss;
+            this.peakTmp = peakTmp;
+        }
+
+        double getPluginsPerMinute() {
+            return plugins * 60.0 / (wallNanos / 1e9);
+        }
+    }
+
+    public void run() throws Exception {
+        Path work = workDir != null ? workDir.toPath() : Files.createTempDirectory("extension-indexer-e2e");
+        List<Result> results = new ArrayList<>();
+        try {
+            System.out.println("Generating " + plugins + " plugins in " + work);
+            try (FakeRepository repository = new FakeRepository(work.resolve("server"), plugins)) {
+                for (String t : threads.split(",")) {
+                    Result r = run(repository, work.resolve("run-" + t.trim()), Integer.parseInt(t.trim()));
+                    results.add(r);
+                    System.out.printf(Locale.ROOT, "%d threads: %.1fs, %.0f plugins/min%n", r.threads, r.wallNanos / 1e9, r.getPluginsPerMinute());
+                }
+            }
+        } finally {
+            if (!keep) {
+                FileUtils.deleteDirectory(work.toFile());
+            }
+        }
+
+        System.out.println();
+        System.out.println("threads  seconds  plugins/min  peak RSS (MB)  peak tmp (MB)");
+        for (Result r : results) {
+            System.out.printf(Locale.ROOT, "%7d  %7.1f  %11.0f  %13s  %13.1f%n", r.threads, r.wallNanos / 1e9, r.getPluginsPerMinute(),
+                    r.peakRss < 0 ? "n/a" : Long.toString(r.peakRss >> 20), r.peakTmp / (double) (1 << 20));
+        }
+
+        if (resultFile != null) {
+            writeResults(results);
+        }
+    }
+
+    private Result run(FakeRepository repository, Path dir, int threads) throws IOException, InterruptedException {
+        Path tmp = dir.resolve("tmp");
+        Files.createDirectories(tmp);
+
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        if (!jvmArgs.isBlank()) {
+            command.addAll(Arrays.asList(jvmArgs.trim().split("\\s+")));
+        }
+        command.addAll(List.of(
+                "-Djava.io.tmpdir=" + tmp,
+                "-cp", System.getProperty("java.class.path"),
+                ExtensionPointListGenerator.class.getName(),
+                "-updateCenterJson", repository.getUpdateCenterUrl(),
+                "-json", dir.resolve("extension-points.json").toString(),
+                "-localRepository", dir.resolve("m2").toString(),
+                "-report", dir.resolve("report.json").toString(),
+                "-fetchThreads", Integer.toString(threads * 2),
+                "-resolveThreads", Integer.toString(threads),
+                "-compileThreads", Integer.toString(threads)));
+        if (fullAnalysis) {
+            command.add("-fullAnalysis");
+        }
+
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.environment().put("ARTIFACT_CACHING_PROXY_ORIGIN", repository.getOrigin());
+        builder.environment().remove("ARTIFACT_CACHING_PROXY_USERNAME");
+        builder.environment().remove("ARTIFACT_CACHING_PROXY_PASSWORD");
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(dir.resolve("indexer.log").toFile());
+
+        long start = System.nanoTime();
+        Process proc = builder.start();
+        long peakRss = -1;
+        long peakTmp = 0;
+        while (!proc.waitFor(SAMPLE_MILLIS, TimeUnit.MILLISECONDS)) {
+            peakRss = Math.max(peakRss, getPeakRss(proc.pid()));
+            peakTmp = Math.max(peakTmp, getSize(tmp));
+        }
+        long wallNanos = System.nanoTime() - start;
+
+        if (proc.exitValue() != 0) {
+            System.out.write(Files.readAllBytes(dir.resolve("indexer.log")));
+            throw new IOException("The indexer failed with exit code " + proc.exitValue() + " when running with " + threads + " threads");
+        }
+        return new Result(threads, wallNanos, repository.getPlugins(), peakRss, peakTmp);
+    }
+
+    private void writeResults(List<Result> results) throws IOException {
+        try (JsonWriter w = new JsonWriter(Files.newBufferedWriter(resultFile.toPath(), StandardCharsets.UTF_8), 2)) {
+            w.beginArray(results.size());
+            for (Result r : results) {
+                w.beginObject(6)
+                        .name("threads").value(r.threads)
+                        .name("plugins").value(r.plugins)
+                        .name("wallMillis").value(TimeUnit.NANOSECONDS.toMillis(r.wallNanos))
+                        .name("pluginsPerMinute").value(Math.round(r.getPluginsPerMinute()))
+                        .name("peakRssBytes").value(r.peakRss)
+                        .name("peakTmpBytes").value(r.peakTmp)
+                        .end();
+            }
+            w.end();
+        }
+    }
+
+    /**
+     * Reads the high-water mark of the resident set size of a process from procfs, or returns -1 if it's not there.
+     */
+    private static long getPeakRss(long pid) {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/" + pid + "/status"), StandardCharsets.US_ASCII)) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.substring("VmHWM:".length()).replace("kB", "").trim()) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not on Linux, or the process just went away
+        }
+        return -1;
+    }
+
+    private static long getSize(Path dir) {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            return walk.mapToLong(p -> {
+                try {
+                    return Files.isRegularFile(p) ? Files.size(p) : 0;
+                } catch (IOException e) {
+                    return 0; // deleted while walking
+                }
+            }).sum();
+        } catch (IOException | UncheckedIOException e) {
+            return 0; // something got deleted while walking, there will be another sample
+        }
+    }
+
+    private static final long SAMPLE_MILLIS = 100;
+}
@@ -0,0 +1,54 @@
+package org.jenkinsci.extension_indexer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compiling and scanning a whole module with {@link ExtensionPointsExtractor}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ExtractBenchmark {
+    @Param({"small", "medium", "core"})
+    public Fixture.Size size;
+
+    @Param({"false", "true"})
+    public boolean fullAnalysis;
+
+    private Fixture fixture;
+    private ExtensionPointsExtractor extractor;
+
+    @Setup
+    public void setUp() throws IOException {
+        fixture = new Fixture(size);
+        extractor = new ExtensionPointsExtractor(fullAnalysis);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public List<ClassOfInterest> extract() throws IOException {
+        return extractor.extract(fixture.newModule(), fixture.newSourceAndLibs());
+    }
+}
@@ -0,0 +1,250 @@
+package org.jenkinsci.extension_indexer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * An update center and a Maven repository with generated plugins, served over HTTP on the loopback interface,
+ * for {@link EndToEndBenchmark} to point the indexer at.
+ * <p>
+ * The repository is served both as {@code /releases/}, where the indexer downloads sources and POMs from,
+ * and as {@code /public/}, where dependencies are resolved from, just like the artifact caching proxies.
+ * Every tenth plugin is medium sized and the rest are small, see {@link Fixture.Size}.
+ */
+final class FakeRepository implements Closeable {
+    static final String CORE_VERSION = "2.0";
+
+    private final Path dir;
+    private final Path repo;
+    private final int plugins;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "fake-repository");
+        t.setDaemon(true);
+        return t;
+    });
+
+    FakeRepository(Path dir, int plugins) throws IOException {
+        this.dir = dir.toAbsolutePath().normalize();
+        this.repo = this.dir.resolve("repo");
+        this.plugins = plugins;
+
+        writeCore();
+        writeArtifact(SHARED_LIBRARY, "jar", emptyJar());
+        writeArtifact(SHARED_LIBRARY, "pom", pom(SHARED_LIBRARY, "jar", ""));
+        for (int i = 0; i < plugins; i++) {
+            writePlugin(i);
+        }
+        writeUpdateCenter();
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * What {@code ARTIFACT_CACHING_PROXY_ORIGIN} should be set to.
+     */
+    String getOrigin() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    String getUpdateCenterUrl() {
+        return getOrigin() + "/update-center.json";
+    }
+
+    int getPlugins() {
+        return plugins;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.stop(0);
+        executor.shutdownNow();
+        FileUtils.deleteDirectory(dir.toFile());
+    }
+
+    private void writeCore() throws IOException {
+        Path jar = getArtifact(CORE, "jar");
+        Fixture.writeCoreJar(dir.resolve("core"), jar);
+        writeArtifact(CORE, "pom", pom(CORE, "jar", ""));
+        try (FileSystem zip = newSourcesJar(CORE)) {
+            Fixture.writeCoreSources(zip.getPath("/"));
+        }
+    }
+
+    private void writePlugin(int i) throws IOException {
+        String gav = getPluginGav(i);
+        String dependencies = "    <dependency>\n"
+                + "      <groupId>org.jenkins-ci.main</groupId>\n"
+                + "      <artifactId>jenkins-core</artifactId>\n"
+                + "      <version>" + CORE_VERSION + "</version>\n"
+                + "      <scope>provided</scope>\n"
+                + "    </dependency>\n"
+                + "    <dependency>\n"
+                + "      <groupId>org.example</groupId>\n"
+                + "      <artifactId>shared-library</artifactId>\n"
+                + "      <version>1.0</version>\n"
+                + "    </dependency>\n";
+        writeArtifact(gav, "pom", pom(gav, "hpi", dependencies));
+        Fixture.Size size = i % 10 == 9 ? Fixture.Size.medium : Fixture.Size.small;
+        try (FileSystem zip = newSourcesJar(gav)) {
+            for (int j = 0; j < size.classes; j++) {
+                Fixture.writePluginClass(zip.getPath("/"), "org.example.plugin" + i, j);
+            }
+        }
+    }
+
+    private void writeUpdateCenter() throws IOException {
+        try (JsonWriter w = new JsonWriter(Files.newBufferedWriter(dir.resolve("update-center.json"), StandardCharsets.UTF_8), 2)) {
+            w.beginObject(2);
+            w.name("core").beginObject(3)
+                    .name("name").value("core")
+                    .name("version").value(CORE_VERSION)
+                    .name("url").value("https://example.org/jenkins.war")
+                    .end();
+            w.name("plugins").beginObject(plugins);
+            for (int i = 0; i < plugins; i++) {
+                String name = "plugin" + i;
+                w.name(name).beginObject(6)
+                        .name("name").value(name)
+                        .name("gav").value(getPluginGav(i))
+                        .name("url").value("https://example.org/" + name + ".hpi")
+                        .name("title").value("Plugin " + i)
+                        .name("scm").value("https://github.com/example/" + name + "-plugin")
+                        .name("size").value(Files.size(getArtifact(getPluginGav(i), "sources.jar")))
+                        .end();
+            }
+            w.end();
+            w.end();
+        }
+    }
+
+    private FileSystem newSourcesJar(String gav) throws IOException {
+        Path jar = getArtifact(gav, "sources.jar");
+        Files.createDirectories(jar.getParent());
+        return FileSystems.newFileSystem(URI.create("jar:" + jar.toUri()), Map.of("create", "true"));
+    }
+
+    private void writeArtifact(String gav, String extension, byte[] content) throws IOException {
+        Path f = getArtifact(gav, extension);
+        Files.createDirectories(f.getParent());
+        Files.write(f, content);
+    }
+
+    /**
+     * Location of an artifact in the repository, where the extension may include a classifier, like "sources.jar".
+     */
+    private Path getArtifact(String gav, String extension) {
+        String[] splitGav = gav.split(":", 3);
+        String name = splitGav[1] + "-" + splitGav[2] + (extension.equals("sources.jar") ? "-" : ".") + extension;
+        return repo.resolve(splitGav[0].replace('.', '/') + "/" + splitGav[1] + "/" + splitGav[2] + "/" + name);
+    }
+
+    private static String getPluginGav(int i) {
+        return "org.example.plugins:plugin" + i + ":1.0";
+    }
+
+    private static byte[] emptyJar() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        new JarOutputStream(out, manifest).close();
+        return out.toByteArray();
+    }
+
+    private static byte[] pom(String gav, String packaging, String dependencies) {
+        String[] splitGav = gav.split(":", 3);
+        return ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+                + "  <modelVersion>4.0.0</modelVersion>\n"
+                + "  <groupId>" + splitGav[0] + "</groupId>\n"
+                + "  <artifactId>" + splitGav[1] + "</artifactId>\n"
+                + "  <version>" + splitGav[2] + "</version>\n"
+                + "  <packaging>" + packaging + "</packaging>\n"
+                + "  <dependencies>\n" + dependencies + "  </dependencies>\n"
+                + "</project>\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            Path file;
+            if (path.equals("/update-center.json")) {
+                file = dir.resolve("update-center.json");
+            } else if (path.startsWith("/releases/")) {
+                file = repo.resolve(path.substring("/releases/".length()));
+            } else if (path.startsWith("/public/")) {
+                file = repo.resolve(path.substring("/public/".length()));
+            } else {
+                file = null;
+            }
+
+            byte[] content = null;
+            if (file != null && file.normalize().startsWith(dir)) {
+                if (Files.isRegularFile(file)) {
+                    content = Files.readAllBytes(file);
+                } else if (file.getFileName().toString().endsWith(".sha1")) {
+                    Path artifact = file.resolveSibling(file.getFileName().toString().replaceAll("\\.sha1$", ""));
+                    if (Files.isRegularFile(artifact)) {
+                        content = sha1(artifact);
+                    }
+                }
+            }
+
+            boolean head = exchange.getRequestMethod().equals("HEAD");
+            if (content == null) {
+                exchange.sendResponseHeaders(404, -1);
+            } else if (head) {
+                exchange.getResponseHeaders().set("Content-Length", Integer.toString(content.length));
+                exchange.sendResponseHeaders(200, -1);
+            } else {
+                try (InputStream in = exchange.getRequestBody()) {
+                    in.transferTo(OutputStream.nullOutputStream());
+                }
+                exchange.sendResponseHeaders(200, content.length);
+                exchange.getResponseBody().write(content);
+            }
+        }
+    }
+
+    private static byte[] sha1(Path file) throws IOException {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(Files.readAllBytes(file));
+            StringBuilder b = new StringBuilder();
+            for (byte d : digest) {
+                b.append(String.format("%02x", d));
+            }
+            return b.toString().getBytes(StandardCharsets.US_ASCII);
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static final String CORE = "org.jenkins-ci.main:jenkins-core:" + CORE_VERSION;
+    private static final String SHARED_LIBRARY = "org.example:shared-library:1.0";
+}
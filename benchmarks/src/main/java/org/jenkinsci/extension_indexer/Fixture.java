@@ -0,0 +1,238 @@
+package org.jenkinsci.extension_indexer;
+
+import org.apache.commons.io.FileUtils;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Plugin sources and a jar that stands in for jenkins-core, for the benchmarks to run against.
+ * <p>
+ * Everything is generated the same way every time, without touching the network, so that results can be
+ * compared from one run to the next. The sources mix the kinds of classes the extractor cares about
+ * (extensions, actions with anonymous classes, extension point definitions, views) with classes it doesn't.
+ */
+final class Fixture implements Closeable {
+    /**
+     * Sizes of the benchmarks, in number of generated top level classes.
+     */
+    enum Size {
+        small(30), medium(300), core(3000);
+
+        final int classes;
+
+        Size(int classes) {
+            this.classes = classes;
+        }
+    }
+
+    final File dir;
+    final File src;
+    final File lib;
+    /**
+     * Fully qualified names of all the classes, including those in the jar.
+     */
+    private final List<String> classNames = new ArrayList<>();
+
+    Fixture(Size size) throws IOException {
+        this.dir = Files.createTempDirectory("extension-indexer-benchmark").toFile();
+        this.src = new File(dir, "src");
+        this.lib = new File(dir, "lib");
+        try {
+            classNames.addAll(writeCoreJar(dir.toPath(), new File(lib, "jenkins-core.jar").toPath()));
+            for (int i = 0; i < size.classes; i++) {
+                classNames.add(writePluginClass(src.toPath(), "org.example", i));
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    SourceAndLibs newSourceAndLibs() {
+        return new SourceAndLibs(src, lib);
+    }
+
+    Module newModule() {
+        return new Module.PluginModule("org.example:fixture:1.0", "https://example.org/fixture.hpi", "Fixture Plugin", "https://github.com/example/fixture-plugin");
+    }
+
+    List<String> getClassNames() {
+        return Collections.unmodifiableList(classNames);
+    }
+
+    @Override
+    public void close() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    /**
+     * Compiles the classes that stand in for jenkins-core in the given work directory and writes them out
+     * as a jar, together with a few views.
+     *
+     * @return names of the classes in the jar
+     */
+    static List<String> writeCoreJar(Path work, Path jar) throws IOException {
+        Path coreSrc = work.resolve("core-src");
+        Path classes = work.resolve("core-classes");
+        List<String> names = writeCoreSources(coreSrc);
+        List<String> files = new ArrayList<>();
+        for (String n : names) {
+            files.add(coreSrc.resolve(n.replace('.', '/') + ".java").toString());
+        }
+        Files.createDirectories(classes);
+        List<String> args = new ArrayList<>(List.of("-d", classes.toString(), "-nowarn"));
+        args.addAll(files);
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        if (javac.run(null, null, null, args.toArray(new String[0])) != 0) {
+            throw new IOException("Failed to compile the fixture jar");
+        }
+
+        Files.createDirectories(jar.getParent());
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar));
+             Stream<Path> walk = Files.walk(classes)) {
+            for (Path p : (Iterable<Path>) walk.filter(Files::isRegularFile).sorted()::iterator) {
+                out.putNextEntry(new JarEntry(classes.relativize(p).toString().replace(File.separatorChar, '/')));
+                Files.copy(p, out);
+            }
+            writeView(out, "hudson/tasks/Builder/config.jelly");
+            writeView(out, "hudson/model/Descriptor/global.jelly");
+            writeView(out, "hudson/model/Action/index.jelly");
+        }
+        return names;
+    }
+
+    /**
+     * Writes the sources of the classes that stand in for jenkins-core under the given root,
+     * which may as well be in a zip file system.
+     *
+     * @return names of the classes written
+     */
+    static List<String> writeCoreSources(Path root) throws IOException {
+        Map<String,String> sources = new LinkedHashMap<>();
+        sources.put("hudson.ExtensionPoint", "package hudson;\npublic interface ExtensionPoint {}\n");
+        sources.put("hudson.Extension", "package hudson;\n"
+                + "import java.lang.annotation.*;\n"
+                + "@Retention(RetentionPolicy.RUNTIME) @Target({ElementType.TYPE, ElementType.FIELD, ElementType.METHOD})\n"
+                + "public @interface Extension {}\n");
+        sources.put("hudson.model.Describable", "package hudson.model;\npublic interface Describable<T extends Describable<T>> {}\n");
+        sources.put("hudson.model.Descriptor", "package hudson.model;\n"
+                + "public abstract class Descriptor<T extends Describable<T>> {\n"
+                + "    public abstract String getDisplayName();\n"
+                + "}\n");
+        sources.put("hudson.model.Action", "package hudson.model;\npublic interface Action {\n    String getDisplayName();\n}\n");
+        sources.put("hudson.model.RootAction", "package hudson.model;\npublic interface RootAction extends Action, hudson.ExtensionPoint {}\n");
+        sources.put("hudson.tasks.Builder", "package hudson.tasks;\n"
+                + "public abstract class Builder implements hudson.model.Describable<Builder>, hudson.ExtensionPoint {}\n");
+
+        for (Map.Entry<String,String> e : sources.entrySet()) {
+            Path f = root.resolve(e.getKey().replace('.', '/') + ".java");
+            Files.createDirectories(f.getParent());
+            Files.writeString(f, e.getValue(), StandardCharsets.UTF_8);
+        }
+        return new ArrayList<>(sources.keySet());
+    }
+
+    private static void writeView(JarOutputStream jar, String name) throws IOException {
+        jar.putNextEntry(new JarEntry(name));
+        jar.write(VIEW.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes the i-th generated plugin class under the given root, which may as well be in a zip file system.
+     * Every 25 classes share a package under the given prefix.
+     *
+     * @return name of the class written
+     */
+    static String writePluginClass(Path root, String packagePrefix, int i) throws IOException {
+        String pkg = packagePrefix + ".p" + (i / 25);
+        String name = "Widget" + i;
+        StringBuilder b = new StringBuilder();
+        b.append("package ").append(pkg).append(";\n\n");
+        b.append("import hudson.Extension;\n");
+        b.append("import hudson.ExtensionPoint;\n");
+        b.append("import hudson.model.Descriptor;\n");
+        b.append("import hudson.model.RootAction;\n");
+        b.append("import hudson.tasks.Builder;\n");
+        b.append("import java.util.ArrayList;\n");
+        b.append("import java.util.List;\n\n");
+        b.append("/**\n");
+        b.append(" * Widget number ").append(i).append(", which works together with {@link Builder} and {@link RootAction}.\n");
+        b.append(" * <p>\n");
+        b.append(" * Handles <b>bold</b> &amp; <i>italic</i> input, unlike {@link ").append(pkg).append(".Widget").append(i).append("}.\n");
+        b.append(" *\n");
+        b.append(" * @author Jenkins Fixture\n");
+        b.append(" * @since 1.").append(i).append("\n");
+        b.append(" */\n");
+
+        boolean views = false;
+        switch (i % 4) {
+        case 0: // an extension with a descriptor, the most common kind
+            b.append("public class ").append(name).append(" extends Builder {\n");
+            b.append("    private final String name;\n\n");
+            b.append("    public ").append(name).append("(String name) {\n        this.name = name;\n    }\n\n");
+            b.append("    public String getName() {\n        return name;\n    }\n\n");
+            b.append("    /**\n     * Descriptor of {@link ").append(name).append("}.\n     */\n");
+            b.append("    @Extension\n");
+            b.append("    public static class DescriptorImpl extends Descriptor<Builder> {\n");
+            b.append("        @Override\n        public String getDisplayName() {\n            return \"Widget ").append(i).append("\";\n        }\n");
+            b.append("    }\n");
+            views = true;
+            break;
+        case 1: // an action, with an anonymous class that can only be found by attributing the method body
+            b.append("@Extension\n");
+            b.append("public class ").append(name).append(" implements RootAction {\n");
+            b.append("    @Override\n    public String getDisplayName() {\n");
+            b.append("        Runnable r = new Runnable() {\n            @Override\n            public void run() {}\n        };\n");
+            b.append("        r.run();\n");
+            b.append("        return \"Widget ").append(i).append("\";\n    }\n");
+            views = i % 2 == 1;
+            break;
+        case 2: // an extension point definition, with an implementation
+            b.append("public abstract class ").append(name).append(" implements ExtensionPoint {\n");
+            b.append("    public abstract int weight();\n\n");
+            b.append("    @Extension\n");
+            b.append("    public static class Default extends ").append(name).append(" {\n");
+            b.append("        @Override\n        public int weight() {\n            return ").append(i).append(";\n        }\n");
+            b.append("    }\n");
+            break;
+        default: // nothing of interest
+            b.append("public class ").append(name).append(" {\n");
+            b.append("    private final List<String> names = new ArrayList<>();\n\n");
+            b.append("    public int count(String prefix) {\n");
+            b.append("        int n = 0;\n");
+            b.append("        for (String s : names) {\n            if (s.startsWith(prefix)) {\n                n++;\n            }\n        }\n");
+            b.append("        return n;\n    }\n");
+            break;
+        }
+        b.append("}\n");
+
+        Path dir = root.resolve(pkg.replace('.', '/'));
+        Files.createDirectories(dir);
+        Files.writeString(dir.resolve(name + ".java"), b, StandardCharsets.UTF_8);
+
+        if (views) {
+            Path v = dir.resolve(name);
+            Files.createDirectories(v);
+            Files.writeString(v.resolve("config.jelly"), VIEW, StandardCharsets.UTF_8);
+            Files.writeString(v.resolve("index.groovy"), "l = namespace(lib.LayoutTagLib)\n", StandardCharsets.UTF_8);
+        }
+        return pkg + "." + name;
+    }
+
+    private static final String VIEW = "<?jelly escape-by-default='true'?>\n<j:jelly xmlns:j=\"jelly:core\"/>\n";
+}
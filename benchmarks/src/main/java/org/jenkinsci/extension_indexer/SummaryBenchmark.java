@@ -0,0 +1,92 @@
+package org.jenkinsci.extension_indexer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning what was found in a module into documentation and output:
+ * {@link ClassOfInterest#getDocumentation()}, {@link Module#toJSON()} and the Asciidoc of its families.
+ * <p>
+ * The summaries keep the documentation once it's rendered, so the output benchmarks get fresh ones every time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SummaryBenchmark {
+    @Param({"small", "medium"})
+    public Fixture.Size size;
+
+    private Fixture fixture;
+    private List<ClassOfInterest> found;
+
+    @Setup
+    public void setUp() throws IOException {
+        fixture = new Fixture(size);
+        found = new ExtensionPointsExtractor().extract(fixture.newModule(), fixture.newSourceAndLibs());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public void getDocumentation(Blackhole bh) {
+        for (ClassOfInterest c : found) {
+            bh.consume(c.getDocumentation());
+        }
+    }
+
+    @Benchmark
+    public Object moduleToJSON(Summaries s) {
+        return s.module.toJSON();
+    }
+
+    @Benchmark
+    public void formatAsAsciidoc(Summaries s) {
+        PrintWriter w = new PrintWriter(Writer.nullWriter());
+        for (ExtensionPointListGenerator.Family f : s.generator.getFamilies()) {
+            if (f.definition != null) {
+                f.formatAsAsciidoc(w);
+            }
+        }
+        w.flush();
+    }
+
+    /**
+     * What was found in the module, summarized anew for every invocation.
+     */
+    @State(Scope.Thread)
+    public static class Summaries {
+        private Module module;
+        private ExtensionPointListGenerator generator;
+
+        @Setup(Level.Invocation)
+        public void setUp(SummaryBenchmark b) throws IOException {
+            module = b.fixture.newModule();
+            generator = new ExtensionPointListGenerator();
+            generator.summarize(module, b.found);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.jenkinsci.extension_indexer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up the views of every class of a module with {@link SourceAndLibs#getViewFiles(String)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ViewFilesBenchmark {
+    @Param({"small", "medium", "core"})
+    public Fixture.Size size;
+
+    private Fixture fixture;
+    private SourceAndLibs warm;
+
+    @Setup
+    public void setUp() throws IOException {
+        fixture = new Fixture(size);
+        warm = fixture.newSourceAndLibs();
+        warm.getViewFiles(fixture.getClassNames().get(0));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        warm.close();
+        fixture.close();
+    }
+
+    /**
+     * Lookups once the indexes are built.
+     */
+    @Benchmark
+    public void lookup(Blackhole bh) {
+        for (String c : fixture.getClassNames()) {
+            bh.consume(warm.getViewFiles(c));
+        }
+    }
+
+    /**
+     * Lookups including building the index of the sources, as for every module that gets compiled.
+     */
+    @Benchmark
+    public void indexAndLookup(Blackhole bh) throws IOException {
+        try (SourceAndLibs sal = fixture.newSourceAndLibs()) {
+            for (String c : fixture.getClassNames()) {
+                bh.consume(sal.getViewFiles(c));
+            }
+        }
+    }
+}
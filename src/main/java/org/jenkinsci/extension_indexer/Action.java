@@ -3,7 +3,6 @@ package org.jenkinsci.extension_indexer;
 import com.sun.source.util.JavacTask;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.Trees;
-import net.sf.json.JSONObject;
 
 import javax.lang.model.element.TypeElement;
 import java.util.Map;
@@ -22,13 +21,6 @@ public class Action extends ClassOfInterest {
         return implementation;
     }
 
-    @Override
-    public JSONObject toJSON() {
-        JSONObject i = super.toJSON();
-        i.put("action",implementation.getQualifiedName().toString());
-        return i;
-    }
-
     @Override
     public String toString() {
         return "Action "+implementation.getQualifiedName();
@@ -7,13 +7,26 @@ import net.sf.json.JSONObject;
  *
  * @author Vivek Pandey
  */
-public class ActionSummary {
+public class ActionSummary extends ClassOfInterestSummary {
     public final String action;
-    public final JSONObject json;
-    public boolean hasView;
+
     public ActionSummary(Action action) {
-        this.action = action.getImplementationName();
-        this.hasView = action.hasView();
-        this.json = action.toJSON();
+        super(action);
+        this.action = implementation;
+    }
+
+    /**
+     * Restores a summary from what {@link #toRecord()} produced in an earlier run.
+     */
+    public ActionSummary(Module module, JSONObject record) {
+        super(module, record);
+        this.action = implementation;
+    }
+
+    @Override
+    public JSONObject toJSON() {
+        JSONObject i = super.toJSON();
+        i.put("action",action);
+        return i;
     }
 }
@@ -6,16 +6,12 @@ import com.sun.source.tree.ExpressionTree;
 import com.sun.source.util.JavacTask;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.Trees;
-import net.sf.json.JSONObject;
 import org.jsoup.Jsoup;
 import org.jsoup.safety.Safelist;
 
 import javax.lang.model.element.TypeElement;
 import java.io.File;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -111,7 +107,13 @@ public abstract class ClassOfInterest {
      * Javadoc excerpt converted to jenkins.io flavored Asciidoc markup.
      */
     public String getDocumentation() {
-        String javadoc = getJavadoc();
+        return toDocumentation(getJavadoc());
+    }
+
+    /**
+     * Converts the first paragraph of the given Javadoc to jenkins.io flavored Asciidoc markup.
+     */
+    static String toDocumentation(String javadoc) {
         if (javadoc == null) return null;
 
         StringBuilder output = new StringBuilder(javadoc.length());
@@ -120,23 +122,66 @@ public abstract class ClassOfInterest {
 
             if (line.trim().startsWith("@")) continue;
 
-            {// replace @link
+            output.append("+++");
+            if (line.contains("{@link")) {// replace @link
                 Matcher m = LINK.matcher(line);
-                StringBuilder sb = new StringBuilder();
-                sb.append("+++");
                 while (m.find()) {
                     String simpleName = m.group(1);
-                    m.appendReplacement(sb, "+++ jenkinsdoc:"+simpleName+"[] +++");
+                    m.appendReplacement(output, "+++ jenkinsdoc:"+simpleName+"[] +++");
                 }
-                m.appendTail(sb);
-                sb.append("+++");
-                line = sb.toString();
+                m.appendTail(output);
+            } else {
+                output.append(line);
             }
+            output.append("+++ ");
+        }
+
+        return clean(output.toString());
+    }
 
-            output.append(line).append(' ');
+    /**
+     * Same as {@code Jsoup.clean(html, Safelist.basic())}, without parsing the text when there's no markup in it.
+     */
+    static String clean(String html) {
+        if (isPlainText(html)) {
+            return collapseWhitespace(html);
+        }
+        return Jsoup.clean(html, Safelist.basic());
+    }
+
+    /**
+     * True if the text has no markup or entities, nor anything else that {@link Jsoup#clean(String, Safelist)}
+     * would escape, so that all it would do is collapse the whitespace.
+     */
+    private static boolean isPlainText(CharSequence s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < ' ' || c > '~' || c == '<' || c == '>' || c == '&') {
+                return false;
+            }
         }
+        return true;
+    }
 
-        return Jsoup.clean(output.toString(), Safelist.basic());
+    /**
+     * Collapses runs of spaces and trims, like Jsoup's pretty printer does with text.
+     */
+    private static String collapseWhitespace(CharSequence s) {
+        StringBuilder r = new StringBuilder(s.length());
+        boolean space = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ' ') {
+                space = true;
+            } else {
+                if (space && r.length() > 0) {
+                    r.append(' ');
+                }
+                space = false;
+                r.append(c);
+            }
+        }
+        return r.toString();
     }
 
     /**
@@ -162,26 +207,4 @@ public abstract class ClassOfInterest {
     public boolean hasView(){
         return views.size() > 0;
     }
-
-
-    public JSONObject toJSON(){
-        JSONObject i = new JSONObject();
-        i.put("className",getImplementationName());
-        i.put("module",module.gav);
-        i.put("javadoc",getJavadoc());
-        i.put("documentation", getDocumentation());
-        i.put("sourceFile",getSourceFile());
-        i.put("lineNumber",getLineNumber());
-        i.put("hasView", hasView());
-        Set<Map<String,String>> vs = new HashSet<>();
-        for (Map.Entry<String, String> entry : views.entrySet()) {
-            Map<String,String> v = new HashMap<>();
-            v.put("name", entry.getKey());
-            v.put("source", entry.getValue());
-            vs.add(v);
-        }
-        i.put("views",vs);
-        return i;
-
-    }
 }
@@ -0,0 +1,152 @@
+package org.jenkinsci.extension_indexer;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Captures the parts of {@link ClassOfInterest} that end up in the JSON output, in a compact form.
+ * <p>
+ * Summaries of every plugin stay in memory until the end of the run, so they don't keep a JSON copy of
+ * themselves around. Strings that repeat across classes go through {@link Symbols}, and the JSON is
+ * only put together when it's written out.
+ *
+ * @see ExtensionSummary
+ * @see ActionSummary
+ */
+public abstract class ClassOfInterestSummary {
+    /**
+     * Back reference to the module where this implementation was found.
+     */
+    public final Module module;
+
+    /**
+     * Fully qualified name of the class.
+     */
+    public final String implementation;
+
+    public final boolean hasView;
+
+    private final String javadoc;
+
+    /**
+     * Rendered from {@link #javadoc} the first time it's asked for, as most of it is never written out.
+     */
+    private String documentation;
+
+    private final String sourceFile;
+
+    private final int lineNumber;
+
+    /**
+     * View names and the corresponding resource names, alternating, in the order they are listed in the JSON.
+     */
+    private final String[] views;
+
+    protected ClassOfInterestSummary(ClassOfInterest c) {
+        this.module = c.module;
+        this.implementation = Symbols.intern(c.getImplementationName());
+        this.javadoc = c.getJavadoc();
+        this.sourceFile = c.getSourceFile();
+        this.lineNumber = (int) c.getLineNumber();
+
+        // this is the order json-lib has always listed the views in
+        Set<Map<String,String>> vs = new HashSet<>();
+        for (Map.Entry<String, String> entry : c.views.entrySet()) {
+            Map<String,String> v = new HashMap<>();
+            v.put("name", entry.getKey());
+            v.put("source", entry.getValue());
+            vs.add(v);
+        }
+        this.views = new String[vs.size() * 2];
+        int i = 0;
+        for (Map<String,String> v : vs) {
+            views[i++] = Symbols.intern(v.get("name"));
+            views[i++] = Symbols.intern(v.get("source"));
+        }
+        this.hasView = views.length > 0;
+    }
+
+    /**
+     * Restores a summary from what {@link #toRecord()} produced in an earlier run.
+     */
+    protected ClassOfInterestSummary(Module module, JSONObject record) {
+        this.module = module;
+        this.implementation = Symbols.intern(record.getString("implementation"));
+        this.javadoc = optString(record, "javadoc");
+        this.sourceFile = record.getString("sourceFile");
+        this.lineNumber = record.getInt("lineNumber");
+        JSONArray v = record.getJSONArray("views");
+        this.views = new String[v.size()];
+        for (int i = 0; i < views.length; i++) {
+            views[i] = Symbols.intern(v.getString(i));
+        }
+        this.hasView = views.length > 0;
+    }
+
+    /**
+     * Javadoc excerpt converted to jenkins.io flavored Asciidoc markup.
+     *
+     * @see ClassOfInterest#getDocumentation()
+     */
+    public String getDocumentation() {
+        if (javadoc == null) {
+            return null;
+        }
+        // rendering the same thing twice on a race is harmless
+        String d = documentation;
+        if (d == null) {
+            documentation = d = ClassOfInterest.toDocumentation(javadoc);
+        }
+        return d;
+    }
+
+    /**
+     * Captures this summary as JSON so that it can be persisted between runs.
+     */
+    public JSONObject toRecord() {
+        JSONObject o = new JSONObject();
+        o.put("implementation", implementation);
+        o.put("javadoc", javadoc);
+        o.put("sourceFile", sourceFile);
+        o.put("lineNumber", lineNumber);
+        o.put("views", views);
+        return o;
+    }
+
+    /**
+     * Gets the information captured in this object as JSON.
+     */
+    public JSONObject toJSON() {
+        JSONObject i = new JSONObject();
+        i.put("className", implementation);
+        i.put("module", module.gav);
+        i.put("javadoc", javadoc);
+        i.put("documentation", getDocumentation());
+        i.put("sourceFile", sourceFile);
+        i.put("lineNumber", lineNumber);
+        i.put("hasView", hasView);
+        List<Map<String,String>> vs = new ArrayList<>(views.length / 2);
+        for (int j = 0; j < views.length; j += 2) {
+            Map<String,String> v = new HashMap<>();
+            v.put("name", views[j]);
+            v.put("source", views[j + 1]);
+            vs.add(v);
+        }
+        i.put("views", vs);
+        return i;
+    }
+
+    /**
+     * json-lib drops null values on the way in, so tell those apart from empty strings on the way out.
+     */
+    static String optString(JSONObject o, String key) {
+        return o.has(key) ? o.getString(key) : null;
+    }
+}
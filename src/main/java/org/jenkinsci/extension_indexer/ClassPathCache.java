@@ -0,0 +1,403 @@
+package org.jenkinsci.extension_indexer;
+
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipFile;
+
+/**
+ * Shares the jars on the classpath between the javac runs of {@link ExtensionPointsExtractor}.
+ * <p>
+ * Every plugin compiles against jenkins-core, and most of them against the same few libraries and plugins, so a
+ * jar that shows up on the classpath a second time is kept open with its list of entries, and the bytes of the
+ * classes that are read from it are kept too, up to a limit. The standard file manager would open, index and
+ * read these jars again for every plugin.
+ * <p>
+ * Jars are opened the way javac opens them when compiling for the release it runs on, so that multi-release jars
+ * resolve to the same classes.
+ */
+final class ClassPathCache {
+    /**
+     * How many times each jar has been on a classpath so far.
+     */
+    private final Map<File,AtomicInteger> uses = new ConcurrentHashMap<>();
+    private final Map<File,Jar> shared = new ConcurrentHashMap<>();
+    /**
+     * Bytes of classes that may be kept in total.
+     */
+    private final long maxBytes;
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    ClassPathCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns a file manager that lists and reads the classpath of the given file manager through this cache.
+     * Closing it closes the given file manager as well.
+     */
+    JavaFileManager wrap(StandardJavaFileManager fileManager, List<File> classPath) throws IOException {
+        for (File f : classPath) {
+            if (!f.isFile() || !f.getName().endsWith(".jar")) {
+                return fileManager; // directories and missing entries are left to javac
+            }
+        }
+        FileManager fm = new FileManager(fileManager);
+        try {
+            for (File f : classPath) {
+                fm.jars.add(getJar(f));
+            }
+        } catch (IOException | RuntimeException e) {
+            fm.close();
+            throw e;
+        }
+        return fm;
+    }
+
+    private Jar getJar(File f) throws IOException {
+        if (uses.computeIfAbsent(f, unused -> new AtomicInteger()).incrementAndGet() >= SHARE_AFTER) {
+            Jar j = shared.get(f);
+            if (j != null && !j.isUpToDate()) {
+                // the file was replaced, so open it again, once the runs still reading the old one are done with it
+                if (shared.remove(f, j)) {
+                    j.retire();
+                }
+                j = null;
+            }
+            if (j == null && shared.size() < MAX_SHARED_JARS) {
+                try {
+                    j = shared.computeIfAbsent(f, file -> {
+                        try {
+                            return new Jar(file, true);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+            if (j != null && j.isUpToDate() && j.retain()) {
+                return j;
+            }
+        }
+        return new Jar(f, false);
+    }
+
+    /**
+     * A jar and its entries, by package.
+     */
+    private final class Jar implements Closeable {
+        private final File file;
+        private final long length;
+        private final long lastModified;
+        private final JarFile jar;
+        /**
+         * True if this jar is used by all the javac runs, and keeps the bytes that are read from it.
+         */
+        private final boolean shared;
+        /**
+         * Number of javac runs using this shared jar.
+         */
+        private int users;
+        /**
+         * Set once this shared jar is no longer handed out, so that it's closed when the last run is done with it.
+         */
+        private volatile boolean retired;
+        private Map<String,List<Entry>> packages;
+        private final Map<String,byte[]> bytes = new ConcurrentHashMap<>();
+
+        Jar(File file, boolean shared) throws IOException {
+            this.file = file;
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+            this.shared = shared;
+            this.jar = new JarFile(file, false, ZipFile.OPEN_READ, Runtime.version());
+        }
+
+        /**
+         * Lists the entries the first time they're needed, since javac may not need anything from the jar at all.
+         */
+        private synchronized Map<String,List<Entry>> getPackages() {
+            if (packages == null) {
+                packages = new HashMap<>();
+                jar.versionedStream().forEach(e -> {
+                    String name = e.getName();
+                    JavaFileObject.Kind kind;
+                    if (name.endsWith(".class")) {
+                        kind = JavaFileObject.Kind.CLASS;
+                    } else if (name.endsWith(".java")) {
+                        kind = JavaFileObject.Kind.SOURCE;
+                    } else {
+                        return;
+                    }
+                    int i = name.lastIndexOf('/');
+                    String packageName = i < 0 ? "" : name.substring(0, i).replace('/', '.');
+                    packages.computeIfAbsent(packageName, unused -> new ArrayList<>()).add(new Entry(this, name, kind, e.getTime()));
+                });
+            }
+            return packages;
+        }
+
+        boolean isUpToDate() {
+            return file.length() == length && file.lastModified() == lastModified;
+        }
+
+        /**
+         * Starts using this shared jar, unless it was just retired.
+         */
+        synchronized boolean retain() {
+            if (retired) {
+                return false;
+            }
+            users++;
+            return true;
+        }
+
+        /**
+         * Done using this jar.
+         */
+        synchronized void release() throws IOException {
+            if (!shared) {
+                close();
+            } else if (--users == 0 && retired) {
+                close();
+            }
+        }
+
+        synchronized void retire() throws IOException {
+            retired = true;
+            long n = 0;
+            for (byte[] b : bytes.values()) {
+                n += b.length;
+            }
+            bytes.clear();
+            cachedBytes.addAndGet(-n);
+            if (users == 0) {
+                close();
+            }
+        }
+
+        void list(String packageName, Set<JavaFileObject.Kind> kinds, boolean recurse, List<JavaFileObject> r) {
+            if (recurse) {
+                for (Map.Entry<String,List<Entry>> p : getPackages().entrySet()) {
+                    if (packageName.isEmpty() || p.getKey().equals(packageName) || p.getKey().startsWith(packageName + ".")) {
+                        add(p.getValue(), kinds, r);
+                    }
+                }
+            } else {
+                List<Entry> entries = getPackages().get(packageName);
+                if (entries != null) {
+                    add(entries, kinds, r);
+                }
+            }
+        }
+
+        private void add(List<Entry> entries, Set<JavaFileObject.Kind> kinds, List<JavaFileObject> r) {
+            for (Entry e : entries) {
+                if (kinds.contains(e.getKind())) {
+                    r.add(e);
+                }
+            }
+        }
+
+        byte[] read(String name) throws IOException {
+            byte[] b = bytes.get(name);
+            if (b != null) {
+                return b;
+            }
+            JarEntry e = jar.getJarEntry(name);
+            if (e == null) {
+                throw new IOException(name + " is gone from " + file);
+            }
+            try (InputStream in = jar.getInputStream(e)) {
+                b = in.readAllBytes();
+            }
+            if (shared && !retired && cachedBytes.get() + b.length <= maxBytes && bytes.putIfAbsent(name, b) == null) {
+                cachedBytes.addAndGet(b.length);
+            }
+            return b;
+        }
+
+        @Override
+        public void close() throws IOException {
+            jar.close();
+        }
+    }
+
+    /**
+     * A class, or source, file in a {@link Jar}.
+     */
+    private static final class Entry implements JavaFileObject {
+        private final Jar jar;
+        private final String name;
+        private final Kind kind;
+        private final String binaryName;
+        private final long lastModified;
+
+        Entry(Jar jar, String name, Kind kind, long lastModified) {
+            this.jar = jar;
+            this.name = name;
+            this.kind = kind;
+            this.binaryName = name.substring(0, name.length() - kind.extension.length()).replace('/', '.');
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public Kind getKind() {
+            return kind;
+        }
+
+        @Override
+        public boolean isNameCompatible(String simpleName, Kind kind) {
+            String baseName = simpleName + kind.extension;
+            return kind == this.kind && (name.equals(baseName) || name.endsWith("/" + baseName));
+        }
+
+        @Override
+        public NestingKind getNestingKind() {
+            return null;
+        }
+
+        @Override
+        public Modifier getAccessLevel() {
+            return null;
+        }
+
+        @Override
+        public URI toUri() {
+            return URI.create("jar:" + jar.file.toURI() + "!/" + name);
+        }
+
+        @Override
+        public String getName() {
+            return jar.file.getPath() + "(" + name + ")";
+        }
+
+        @Override
+        public InputStream openInputStream() throws IOException {
+            return new ByteArrayInputStream(jar.read(name));
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Reader openReader(boolean ignoreEncodingErrors) throws IOException {
+            return new StringReader(getCharContent(ignoreEncodingErrors).toString());
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) throws IOException {
+            return new String(jar.read(name), Charset.defaultCharset());
+        }
+
+        @Override
+        public Writer openWriter() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public boolean delete() {
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return getName();
+        }
+    }
+
+    /**
+     * Serves {@link StandardLocation#CLASS_PATH} out of {@link Jar}s, in the order they are on the classpath.
+     */
+    private static final class FileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final List<Jar> jars = new ArrayList<>();
+
+        FileManager(StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public Iterable<JavaFileObject> list(Location location, String packageName, Set<JavaFileObject.Kind> kinds, boolean recurse) throws IOException {
+            if (location != StandardLocation.CLASS_PATH) {
+                return super.list(location, packageName, kinds, recurse);
+            }
+            List<JavaFileObject> r = new ArrayList<>();
+            for (Jar j : jars) {
+                j.list(packageName, kinds, recurse, r);
+            }
+            return r;
+        }
+
+        @Override
+        public String inferBinaryName(Location location, JavaFileObject file) {
+            if (file instanceof Entry) {
+                return ((Entry) file).binaryName;
+            }
+            return super.inferBinaryName(location, file);
+        }
+
+        @Override
+        public boolean isSameFile(FileObject a, FileObject b) {
+            if (a instanceof Entry || b instanceof Entry) {
+                return a.equals(b);
+            }
+            return super.isSameFile(a, b);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                for (Jar j : jars) {
+                    j.release();
+                }
+            } finally {
+                super.close();
+            }
+        }
+    }
+
+    /**
+     * A jar is shared once it's on this many classpaths, so that those of a single plugin aren't kept open.
+     */
+    private static final int SHARE_AFTER = 2;
+    /**
+     * Limits the number of open files.
+     */
+    private static final int MAX_SHARED_JARS = 500;
+}
@@ -0,0 +1,339 @@
+package org.jenkinsci.extension_indexer;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.apache.maven.settings.Mirror;
+import org.apache.maven.settings.Server;
+import org.apache.maven.settings.Settings;
+import org.apache.maven.settings.building.DefaultSettingsBuilderFactory;
+import org.apache.maven.settings.building.DefaultSettingsBuildingRequest;
+import org.apache.maven.settings.building.SettingsBuildingException;
+import org.eclipse.aether.ConfigurationProperties;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositoryException;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.connector.basic.BasicRepositoryConnectorFactory;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.impl.DefaultServiceLocator;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactDescriptorException;
+import org.eclipse.aether.resolution.ArtifactDescriptorRequest;
+import org.eclipse.aether.resolution.ArtifactDescriptorResult;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.resolution.DependencyRequest;
+import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
+import org.eclipse.aether.spi.connector.transport.TransporterFactory;
+import org.eclipse.aether.transport.file.FileTransporterFactory;
+import org.eclipse.aether.transport.http.HttpTransporterFactory;
+import org.eclipse.aether.util.artifact.JavaScopes;
+import org.eclipse.aether.util.filter.DependencyFilterUtils;
+import org.eclipse.aether.util.repository.AuthenticationBuilder;
+import org.eclipse.aether.util.repository.ConservativeAuthenticationSelector;
+import org.eclipse.aether.util.repository.DefaultAuthenticationSelector;
+import org.eclipse.aether.util.repository.DefaultMirrorSelector;
+import org.eclipse.aether.util.repository.SimpleArtifactDescriptorPolicy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the compile classpath of a {@link Module}.
+ * <p>
+ * By default this happens in-process through Maven Resolver, with one session and local repository
+ * shared by all the threads. Forking {@code mvn} for every module remains available as a fallback.
+ * Both go through the mirrors and credentials of the same Maven settings, see {@link #getSettingsFile()}.
+ * <p>
+ * Either way, the classpath points straight into one local repository, which acts as a jar store keyed by GAV
+ * that is shared by all the modules, so that the same jars are not copied over and over again.
+ */
+public class DependencyResolver {
+    private final File localRepository;
+    private final boolean fork;
+
+    private final RepositorySystem system;
+    private final RepositorySystemSession session;
+    /**
+     * Same as {@link #session}, but fails on a missing or broken POM instead of treating it as one without
+     * dependencies, for the module itself. Its dependencies keep the lenient policy of {@code mvn}.
+     */
+    private final RepositorySystemSession strictSession;
+    private final List<RemoteRepository> repositories;
+
+    /**
+     * @param localRepository
+     *      Local Maven repository to resolve into, or null to use the default one.
+     * @param fork
+     *      If true, always fork {@code mvn} instead of resolving in-process.
+     */
+    public DependencyResolver(File localRepository, boolean fork) {
+        this(localRepository, fork, 0);
+    }
+
+    /**
+     * @param localRepository
+     *      Local Maven repository to resolve into, or null to use the default one.
+     * @param fork
+     *      If true, always fork {@code mvn} instead of resolving in-process.
+     * @param timeout
+     *      Seconds a single download may take when resolving in-process, or 0 for Maven Resolver's default.
+     */
+    public DependencyResolver(File localRepository, boolean fork, int timeout) {
+        this(localRepository, fork, timeout, fork ? null : createRemoteRepository());
+    }
+
+    /**
+     * @param remote
+     *      Repository to resolve from in-process, instead of the Jenkins one.
+     */
+    DependencyResolver(File localRepository, boolean fork, int timeout, RemoteRepository remote) {
+        this.localRepository = localRepository != null ? localRepository
+                : new File(System.getProperty("maven.repo.local", System.getProperty("user.home") + "/.m2/repository"));
+        this.fork = fork;
+        if (fork) {
+            system = null;
+            session = null;
+            strictSession = null;
+            repositories = null;
+        } else {
+            system = createRepositorySystem();
+            session = createSession(system, this.localRepository, timeout);
+            DefaultRepositorySystemSession strict = new DefaultRepositorySystemSession(session);
+            strict.setArtifactDescriptorPolicy(new SimpleArtifactDescriptorPolicy(false, false));
+            strict.setReadOnly();
+            strictSession = strict;
+            repositories = system.newResolutionRepositories(session, List.of(remote));
+        }
+    }
+
+    /**
+     * Resolves the compile scope dependencies of the given module, plus the given core.
+     *
+     * @param pomDir
+     *      Directory that contains the {@code pom.xml} of the module, used when forking Maven.
+     * @return
+     *      Jar files in the local repository that form the classpath.
+     */
+    public List<File> resolve(Module module, Module.CoreModule core, File pomDir) throws IOException, InterruptedException {
+        if (!fork) {
+            try {
+                return resolveInProcess(module, core);
+            } catch (RepositoryException | RuntimeException e) {
+                System.err.println("Failed to resolve dependencies of " + module.gav + " in-process, falling back to forking Maven");
+                e.printStackTrace();
+            }
+        }
+        return downloadDependencies(pomDir, core);
+    }
+
+    List<File> resolveInProcess(Module module, Module.CoreModule core) throws RepositoryException {
+        // without the POM or one of its parents, we'd index against core alone: rather let mvn have a go at it
+        ArtifactDescriptorResult descriptor = system.readArtifactDescriptor(strictSession,
+                new ArtifactDescriptorRequest(new DefaultArtifact(module.gav), repositories, null));
+        if (!descriptor.getExceptions().isEmpty()) {
+            throw new ArtifactDescriptorException(descriptor);
+        }
+
+        List<RemoteRepository> moduleRepositories = getRepositories(descriptor);
+
+        // mimic maven-dependency-plugin's includeScope=compile, which also covers provided and system
+        CollectRequest collect = new CollectRequest();
+        collect.setRepositories(moduleRepositories);
+        collect.setManagedDependencies(descriptor.getManagedDependencies());
+        for (Dependency d : descriptor.getDependencies()) {
+            if (CLASSPATH_SCOPES.contains(d.getScope())) {
+                collect.addDependency(d);
+            }
+        }
+
+        List<File> classPath = new ArrayList<>();
+        if (!collect.getDependencies().isEmpty()) {
+            DependencyRequest request = new DependencyRequest(collect, DependencyFilterUtils.classpathFilter(JavaScopes.COMPILE));
+            for (ArtifactResult r : system.resolveDependencies(session, request).getArtifactResults()) {
+                classPath.add(r.getArtifact().getFile());
+            }
+        }
+
+        // the core we index against, on top of whatever version the module itself depends on
+        Artifact coreJar = system.resolveArtifact(session, new ArtifactRequest(new DefaultArtifact(core.gav), moduleRepositories, null)).getArtifact();
+        classPath.add(coreJar.getFile());
+        return classPath;
+    }
+
+    /**
+     * The Jenkins repository, followed by those that the module's POM declares, for dependencies that are
+     * published elsewhere.
+     */
+    private List<RemoteRepository> getRepositories(ArtifactDescriptorResult descriptor) {
+        List<RemoteRepository> r = new ArrayList<>(repositories);
+        for (RemoteRepository d : system.newResolutionRepositories(session, descriptor.getRepositories())) {
+            // most POMs list the Jenkins repository again, or something that's mirrored to it
+            if (r.stream().noneMatch(e -> e.getId().equals(d.getId()) || e.getUrl().equals(d.getUrl()))) {
+                r.add(d);
+            }
+        }
+        return r;
+    }
+
+    @SuppressFBWarnings(value = "COMMAND_INJECTION", justification = "Command injection is not a viable risk here")
+    private List<File> downloadDependencies(File pomDir, Module.CoreModule core) throws IOException, InterruptedException {
+        File classPathFile = new File(pomDir, "classpath.txt");
+        String process = "mvn";
+        if (System.getenv("M2_HOME") != null) {
+            process = System.getenv("M2_HOME") + "/bin/mvn";
+        }
+        List<String> command = new ArrayList<>();
+        command.add(process);
+        command.addAll(Arrays.asList("--settings", getSettingsFile().getAbsolutePath()));
+
+        // list the dependencies where they are in the local repository instead of copying them
+        command.addAll(Arrays.asList("--update-snapshots",
+                "--batch-mode",
+                "-Dmaven.repo.local=" + localRepository.getAbsolutePath(),
+                "org.apache.maven.plugins:maven-dependency-plugin:3.8.0:build-classpath",
+                "org.apache.maven.plugins:maven-dependency-plugin:3.8.0:get",
+                "-Dartifact=" + core.gav,
+                "-Dtransitive=false",
+                "-DincludeScope=compile",
+                "-Dmdep.outputFile=" + classPathFile.getAbsolutePath()));
+
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.environment().put("JAVA_HOME",System.getProperty("java.home"));
+        builder.directory(pomDir);
+        builder.redirectErrorStream(true);
+        // capture the output, but only report it in case of an error
+        File output = new File(pomDir, "mvn.log");
+        builder.redirectOutput(output);
+        Process proc = builder.start();
+        proc.getOutputStream().close();
+
+        int result;
+        try {
+            result = proc.waitFor();
+        } finally {
+            if (proc.isAlive()) {
+                // interrupted by the Watchdog, most likely: take down whatever Maven started as well
+                proc.descendants().forEach(ProcessHandle::destroyForcibly);
+                proc.destroyForcibly();
+            }
+        }
+        if (result != 0) {
+            System.out.write(Files.readAllBytes(output.toPath()));
+            throw new IOException("Maven didn't like this (exit code=" + result + ")! " + pomDir.getAbsolutePath());
+        }
+
+        List<File> classPath = new ArrayList<>();
+        for (String path : Files.readString(classPathFile.toPath(), StandardCharsets.UTF_8).trim().split(File.pathSeparator)) {
+            if (!path.isEmpty()) {
+                classPath.add(new File(path));
+            }
+        }
+        classPath.add(getArtifactFile(core.gav));
+        return classPath;
+    }
+
+    /**
+     * Location of the jar of the given artifact in {@link #localRepository}.
+     */
+    private File getArtifactFile(String gav) {
+        String[] splitGav = gav.split(":", 3);
+        return new File(localRepository, splitGav[0].replace('.', '/') + "/" + splitGav[1] + "/" + splitGav[2] + "/" + splitGav[1] + "-" + splitGav[2] + ".jar");
+    }
+
+    @SuppressWarnings("deprecation") // the service locator is the way to wire up the resolver without a DI container
+    private static RepositorySystem createRepositorySystem() {
+        DefaultServiceLocator locator = MavenRepositorySystemUtils.newServiceLocator();
+        locator.addService(RepositoryConnectorFactory.class, BasicRepositoryConnectorFactory.class);
+        locator.addService(TransporterFactory.class, FileTransporterFactory.class);
+        locator.addService(TransporterFactory.class, HttpTransporterFactory.class);
+        locator.setErrorHandler(new DefaultServiceLocator.ErrorHandler() {
+            @Override
+            public void serviceCreationFailed(Class<?> type, Class<?> impl, Throwable exception) {
+                throw new IllegalStateException("Failed to create " + impl.getName(), exception);
+            }
+        });
+        return locator.getService(RepositorySystem.class);
+    }
+
+    private static RepositorySystemSession createSession(RepositorySystem system, File localRepository, int timeout) {
+        DefaultRepositorySystemSession session = MavenRepositorySystemUtils.newSession();
+        session.setLocalRepositoryManager(system.newLocalRepositoryManager(session, new LocalRepository(localRepository)));
+        if (timeout > 0) {
+            // the Watchdog interrupts the thread, but a stalled read of the HTTP transport doesn't notice that
+            session.setConfigProperty(ConfigurationProperties.REQUEST_TIMEOUT, (int) TimeUnit.SECONDS.toMillis(timeout));
+        }
+        Settings settings = readSettings();
+        if (settings != null) {
+            DefaultMirrorSelector mirrors = new DefaultMirrorSelector();
+            for (Mirror m : settings.getMirrors()) {
+                mirrors.add(m.getId(), m.getUrl(), m.getLayout(), false, m.isBlocked(), m.getMirrorOf(), m.getMirrorOfLayouts());
+            }
+            session.setMirrorSelector(mirrors);
+            DefaultAuthenticationSelector servers = new DefaultAuthenticationSelector();
+            for (Server s : settings.getServers()) {
+                servers.add(s.getId(), new AuthenticationBuilder().addUsername(s.getUsername()).addPassword(s.getPassword()).build());
+            }
+            // credentials set on the repository itself, see createRemoteRepository(), take precedence
+            session.setAuthenticationSelector(new ConservativeAuthenticationSelector(servers));
+        }
+        // for profile activation in the POMs we read
+        session.setSystemProperties(System.getProperties());
+        session.setReadOnly();
+        return session;
+    }
+
+    /**
+     * Maven settings with the mirrors and credentials to use, as provided by the artifact caching proxy setup.
+     */
+    private static File getSettingsFile() {
+        return System.getenv("MAVEN_SETTINGS") != null ? new File(System.getenv("MAVEN_SETTINGS")) : new File("maven-settings.xml");
+    }
+
+    /**
+     * Reads {@link #getSettingsFile()} the way {@code mvn} would, or returns null if there's none.
+     */
+    private static Settings readSettings() {
+        File f = getSettingsFile();
+        if (!f.isFile()) {
+            return null;
+        }
+        DefaultSettingsBuildingRequest request = new DefaultSettingsBuildingRequest();
+        request.setUserSettingsFile(f);
+        request.setSystemProperties(System.getProperties());
+        try {
+            return new DefaultSettingsBuilderFactory().newInstance().build(request).getEffectiveSettings();
+        } catch (SettingsBuildingException e) {
+            System.err.println("Failed to read Maven settings from " + f + ", resolving without its mirrors");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static RemoteRepository createRemoteRepository() {
+        String origin = Module.getRepositoryOrigin();
+        RemoteRepository.Builder builder = new RemoteRepository.Builder("jenkins-public", "default", origin + "/public/");
+        // the artifact caching proxies need authentication, see Downloader
+        if (!origin.startsWith("https://repo.jenkins-ci.org") && System.getenv("ARTIFACT_CACHING_PROXY_USERNAME") != null && System.getenv("ARTIFACT_CACHING_PROXY_PASSWORD") != null) {
+            builder.setAuthentication(new AuthenticationBuilder()
+                    .addUsername(System.getenv("ARTIFACT_CACHING_PROXY_USERNAME"))
+                    .addPassword(System.getenv("ARTIFACT_CACHING_PROXY_PASSWORD"))
+                    .build());
+        }
+        return builder.build();
+    }
+
+    private static final Set<String> CLASSPATH_SCOPES = Set.of(JavaScopes.COMPILE, JavaScopes.PROVIDED, JavaScopes.SYSTEM);
+}
@@ -0,0 +1,236 @@
+package org.jenkinsci.extension_indexer;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Fetches artifacts and the update center JSON through one {@link HttpClient} shared by all the threads,
+ * so that connections are kept alive and multiplexed over HTTP/2 where the server supports it.
+ * <p>
+ * Transient failures (I/O errors, 5xx and 429 responses) are retried a few times with exponential backoff,
+ * so that a single hiccup of the artifact caching proxy doesn't lose a plugin for the week.
+ * <p>
+ * URLs other than HTTP ones, like {@code file:} ones, are simply copied.
+ */
+final class Downloader {
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(30))
+            .build();
+
+    private Downloader() {}
+
+    /**
+     * Downloads the given URL into the given file.
+     *
+     * @param compressible
+     *      True to ask for gzip encoding, which is worthwhile for text like POMs but not for jars.
+     * @return
+     *      Number of bytes transferred over the network.
+     */
+    static long download(URL url, Path file, boolean compressible) throws IOException, InterruptedException {
+        if (!isHttp(url)) {
+            return copy(url, file);
+        }
+        HttpResponse<Path> rsp = fetch(newRequest(url, compressible), file);
+        return getTransferredBytes(rsp, file);
+    }
+
+    /**
+     * Downloads the given URL into the given file unless the copy already there is still current,
+     * based on the ETag and Last-Modified headers recorded next to it during an earlier download.
+     *
+     * @return
+     *      Number of bytes transferred over the network, which is 0 if the existing copy was reused.
+     */
+    static long downloadIfModified(URL url, Path file) throws IOException, InterruptedException {
+        if (!isHttp(url)) {
+            Files.createDirectories(file.getParent());
+            return copy(url, file);
+        }
+        Path headersFile = file.resolveSibling(file.getFileName() + ".headers");
+        Properties headers = new Properties();
+        HttpRequest.Builder request = newRequest(url, true);
+        if (Files.exists(file) && Files.exists(headersFile)) {
+            try (InputStream in = Files.newInputStream(headersFile)) {
+                headers.load(in);
+            }
+            if (headers.getProperty(ETAG) != null) {
+                request.header("If-None-Match", headers.getProperty(ETAG));
+            }
+            if (headers.getProperty(LAST_MODIFIED) != null) {
+                request.header("If-Modified-Since", headers.getProperty(LAST_MODIFIED));
+            }
+        }
+
+        Files.createDirectories(file.getParent());
+        HttpResponse<Path> rsp = fetch(request, file);
+        if (rsp.statusCode() == 304) {
+            System.out.println(url + " is not modified, reusing " + file);
+            return 0;
+        }
+
+        headers.clear();
+        rsp.headers().firstValue(ETAG).ifPresent(v -> headers.setProperty(ETAG, v));
+        rsp.headers().firstValue(LAST_MODIFIED).ifPresent(v -> headers.setProperty(LAST_MODIFIED, v));
+        try (OutputStream out = Files.newOutputStream(headersFile)) {
+            headers.store(out, url.toString());
+        }
+        return getTransferredBytes(rsp, file);
+    }
+
+    private static boolean isHttp(URL url) {
+        return url.getProtocol().equals("http") || url.getProtocol().equals("https");
+    }
+
+    /**
+     * Copies what the given URL points to into the given file, for the URLs that {@link HttpClient} doesn't take,
+     * like {@code file:} ones of a local update center.
+     */
+    private static long copy(URL url, Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (InputStream in = url.openStream()) {
+            long size = Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            return size;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static HttpRequest.Builder newRequest(URL url, boolean compressible) throws IOException {
+        HttpRequest.Builder b;
+        try {
+            b = HttpRequest.newBuilder(url.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid URL " + url, e);
+        }
+        b.timeout(RESPONSE_TIMEOUT);
+        b.header("Accept-Encoding", compressible ? "gzip" : "identity");
+        // If we're querying one of the artifact caching proxies we need to add authentication
+        if (!url.toString().startsWith("https://repo.jenkins-ci.org") && url.toString().startsWith(Module.getRepositoryOrigin())) {
+            b.header("Accept-Charset", "UTF-8");
+            b.header("User-Agent", "backend-extension-indexer/0.1");
+            String auth = getAuth();
+            if (auth != null) {
+                b.header("Authorization", "Basic " + auth);
+            }
+        }
+        return b;
+    }
+
+    /**
+     * Sends the request and saves the body into the given file, retrying on transient failures.
+     * A failure while reading the body is retried just like one while sending the request,
+     * since that's how a proxy resetting the connection usually shows.
+     * <p>
+     * The body is written to the file by the client rather than read from a stream, so that interrupting the
+     * thread, which the {@link Watchdog} does, also gets it out of a transfer that stalled halfway.
+     *
+     * @return
+     *      The response, whose body has been saved. The file is left alone on a 304.
+     */
+    private static HttpResponse<Path> fetch(HttpRequest.Builder request, Path file) throws IOException, InterruptedException {
+        HttpRequest r = request.GET().build();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        for (int attempt = 1; ; attempt++) {
+            HttpResponse<Path> rsp;
+            try {
+                rsp = CLIENT.send(r, HttpResponse.BodyHandlers.ofFile(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+                if (rsp.statusCode() == 200) {
+                    decode(rsp, tmp);
+                }
+            } catch (IOException e) {
+                Files.deleteIfExists(tmp);
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                System.err.println("Failed to fetch " + r.uri() + " (" + e + "), retrying");
+                backoff(attempt);
+                continue;
+            } catch (InterruptedException e) {
+                Files.deleteIfExists(tmp);
+                throw e;
+            }
+
+            int status = rsp.statusCode();
+            if (status == 200) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+                return rsp;
+            }
+            Files.deleteIfExists(tmp);
+            if (status == 304) {
+                return rsp;
+            }
+            if (status == 404) {
+                throw new FileNotFoundException(r.uri().toString());
+            }
+            if ((status >= 500 || status == 429) && attempt < MAX_ATTEMPTS) {
+                System.err.println("Got " + status + " from " + r.uri() + ", retrying");
+                backoff(attempt);
+                continue;
+            }
+            throw new IOException("Got " + status + " from " + r.uri());
+        }
+    }
+
+    private static void backoff(int attempt) throws InterruptedException {
+        Thread.sleep(INITIAL_BACKOFF.toMillis() << (attempt - 1));
+    }
+
+    /**
+     * Decompresses the downloaded file in place, if it came gzip encoded.
+     */
+    private static void decode(HttpResponse<Path> rsp, Path file) throws IOException {
+        if (!"gzip".equalsIgnoreCase(rsp.headers().firstValue("Content-Encoding").orElse(null))) {
+            return;
+        }
+        Path gz = file.resolveSibling(file.getFileName() + ".gz");
+        Files.move(file, gz, StandardCopyOption.REPLACE_EXISTING);
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(gz))) {
+            Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.delete(gz);
+        }
+    }
+
+    private static long getTransferredBytes(HttpResponse<Path> rsp, Path file) throws IOException {
+        return rsp.headers().firstValueAsLong("Content-Length").orElse(Files.size(file));
+    }
+
+    private static String auth;
+
+    // Retrieve the auth from the artifact caching proxy Maven settings file
+    private static synchronized String getAuth() {
+        if (auth == null && System.getenv("ARTIFACT_CACHING_PROXY_USERNAME") != null && System.getenv("ARTIFACT_CACHING_PROXY_PASSWORD") != null) {
+            auth = Base64.getEncoder().encodeToString((System.getenv("ARTIFACT_CACHING_PROXY_USERNAME") + ':' + System.getenv("ARTIFACT_CACHING_PROXY_PASSWORD")).getBytes(StandardCharsets.UTF_8));
+        }
+        return auth;
+    }
+
+    /**
+     * How long to wait for the response to start. A body that stalls halfway is left to the {@link Watchdog}.
+     */
+    private static final Duration RESPONSE_TIMEOUT = Duration.ofMinutes(2);
+    private static final int MAX_ATTEMPTS = 4;
+    private static final Duration INITIAL_BACKOFF = Duration.ofSeconds(2);
+    private static final String ETAG = "ETag";
+    private static final String LAST_MODIFIED = "Last-Modified";
+}
@@ -3,7 +3,6 @@ package org.jenkinsci.extension_indexer;
 import com.sun.source.util.JavacTask;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.Trees;
-import net.sf.json.JSONObject;
 
 import javax.lang.model.element.TypeElement;
 import java.util.Map;
@@ -37,17 +36,6 @@ public final class Extension extends ClassOfInterest {
         return implementation.equals(extensionPoint);
     }
 
-    /**
-     * Gets the information captured in this object as JSON.
-     */
-    @Override
-    public JSONObject toJSON() {
-        JSONObject i = super.toJSON();
-        if (!isDefinition())
-            i.put("extensionPoint",extensionPoint.getQualifiedName().toString());
-        return i;
-    }
-
     @Override
     public String toString() {
         return "Extension "+implementation.getQualifiedName()+" of "+extensionPoint.getQualifiedName();
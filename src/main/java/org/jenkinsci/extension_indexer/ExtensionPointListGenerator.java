@@ -2,7 +2,6 @@ package org.jenkinsci.extension_indexer;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -12,31 +11,32 @@ import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.net.URL;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeMap;
-import java.util.TreeSet;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
 
-import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 
 /**
@@ -48,11 +48,15 @@ public class ExtensionPointListGenerator {
     /**
      * All known {@link Family}s keyed by {@link Family#definition}'s FQCN.
      */
-    private final Map<String,Family> families = new HashMap<>();
+    private final ConcurrentMap<String,Family> families = new ConcurrentHashMap<>();
     /**
      * All the modules we scanned keyed by its {@link Module#artifactId}
      */
     private final Map<String,Module> modules = Collections.synchronizedMap(new HashMap<>());
+    /**
+     * Plugins that the {@link Pipeline} failed to process, with why and after how long.
+     */
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
 
     @Option(name="-adoc",usage="Generate the extension list index and write it out to the specified directory.")
     public File asciidocOutputDir;
@@ -66,10 +70,68 @@ public class ExtensionPointListGenerator {
     @Option(name="-updateCenterJson",usage="Update center's json")
     public String updateCenterJsonFile = "https://updates.jenkins.io/current/update-center.actual.json";
 
+    @Option(name="-cache",usage="Directory to keep extraction results and the update center JSON in between runs, so that unchanged plugins are not compiled again")
+    public File cacheDir;
+
+    @Option(name="-journal",usage="Record every completed plugin in this file as soon as it's done, for -resume")
+    public File journalFile;
+
+    @Option(name="-resume",usage="Pick up where the run that wrote the -journal left off, instead of starting over")
+    public boolean resume;
+
+    @Option(name="-forkMaven",usage="Resolve dependencies by forking mvn for every plugin, instead of in-process")
+    public boolean forkMaven;
+
+    @Option(name="-localRepository",usage="Local Maven repository that the dependency jars of all plugins are resolved into")
+    public File localRepository;
+
+    @Option(name="-fullAnalysis",usage="Attribute and flow-analyze all method bodies, instead of only the class headers and anonymous classes")
+    public boolean fullAnalysis;
+
+    @Option(name="-fetchThreads",usage="Number of plugins to download sources of at the same time (default: twice the number of cores)")
+    public int fetchThreads;
+
+    @Option(name="-resolveThreads",usage="Number of plugins to resolve dependencies of at the same time (default: number of cores)")
+    public int resolveThreads;
+
+    @Option(name="-compileThreads",usage="Number of plugins to compile at the same time (default: number of cores)")
+    public int compileThreads;
+
+    @Option(name="-fetchTimeout",usage="Seconds a plugin may take to download its sources and POM before it's given up on, 0 for no limit")
+    public int fetchTimeout = 600;
+
+    @Option(name="-resolveTimeout",usage="Seconds a plugin may take to resolve its dependencies before it's given up on, 0 for no limit")
+    public int resolveTimeout = 1200;
+
+    @Option(name="-compileTimeout",usage="Seconds a plugin may take to compile and scan before it's given up on, 0 for no limit")
+    public int compileTimeout = 1200;
+
+    @Option(name="-heapFraction",usage="Fraction of the maximum heap that plugins compiling at the same time may use together")
+    public double heapFraction = 0.7;
+
+    @Option(name="-report",usage="Write where the time went, phase by phase and plugin by plugin, to this JSON file, or CSV file if it ends with .csv")
+    public File reportFile;
+
+    @Option(name="-reportTop",usage="Number of slowest plugins to list for each phase in the report")
+    public int reportTop = 10;
+
     @Argument
     public List<String> args = new ArrayList<>();
 
-    private ExtensionPointsExtractor extractor = new ExtensionPointsExtractor();
+    private ExtensionPointsExtractor extractor;
+
+    private ExtractionCache cache;
+
+    private Journal journal;
+
+    private Timings timings;
+
+    private DependencyResolver resolver;
+
+    /**
+     * Where the time went on work that isn't specific to a module.
+     */
+    private final Profile profile = new Profile(null);
 
     private Comparator<ExtensionSummary> IMPLEMENTATION_SORTER = new Comparator<>() {
         @Override
@@ -90,8 +152,8 @@ public class ExtensionPointListGenerator {
      */
     public class Family implements Comparable<Family> {
         // from definition
-        ExtensionSummary definition;
-        private final SortedSet<ExtensionSummary> implementations = new TreeSet<>(IMPLEMENTATION_SORTER);
+        volatile ExtensionSummary definition;
+        private final SortedSet<ExtensionSummary> implementations = new ConcurrentSkipListSet<>(IMPLEMENTATION_SORTER);
 
         public String getName() {
             return definition.extensionPoint;
@@ -110,7 +172,8 @@ public class ExtensionPointListGenerator {
                 w.println("`jenkinsdoc:" + definition.module.artifactId + ":" + definition.extensionPoint + "[]`");
             }
             w.println();
-            w.println(definition.documentation == null || formatJavadoc(definition.documentation).trim().isEmpty() ? "_This extension point has no Javadoc documentation._" : formatJavadoc(definition.documentation));
+            String documentation = formatJavadoc(definition.getDocumentation());
+            w.println(documentation.trim().isEmpty() ? "_This extension point has no Javadoc documentation._" : documentation);
             w.println();
             w.println("**Implementations:**");
             w.println();
@@ -188,112 +251,460 @@ public class ExtensionPointListGenerator {
         app.run();
     }
 
-    public JSONObject getJsonUrl(String url) throws IOException {
-        try (
-                InputStream is = new URL(url).openStream();
-                InputStreamReader isr = new InputStreamReader(is, StandardCharsets.UTF_8);
-                BufferedReader bufferedReader = new BufferedReader(isr)
-            ) {
-            String readLine;
-            StringBuilder sb = new StringBuilder();
-            while ((readLine = bufferedReader.readLine()) != null) {
-                sb.append(readLine);
+    /**
+     * Opens the update center JSON, downloading it first if it's remote.
+     */
+    private InputStream openJsonUrl(String url) throws IOException, InterruptedException {
+        URL u = new URL(url);
+        if (!u.getProtocol().startsWith("http")) {
+            return u.openStream();
+        }
+
+        try (Profile.Timer t = profile.start(Profile.Phase.UPDATE_CENTER)) {
+            if (cacheDir == null) {
+                Path file = Files.createTempFile("update-center", ".json");
+                t.addBytesTransferred(Downloader.download(u, file, true));
+                return Files.newInputStream(file, StandardOpenOption.DELETE_ON_CLOSE);
             }
-            return JSONObject.fromObject(sb.toString());
+            // reused as long as the update center says it hasn't changed
+            Path file = new File(cacheDir, FilenameUtils.getName(u.getPath())).toPath();
+            t.addBytesTransferred(Downloader.downloadIfModified(u, file));
+            return Files.newInputStream(file);
         }
     }
 
     public void run() throws Exception {
-        JSONObject updateCenterJson = getJsonUrl(updateCenterJsonFile);
-
         if (asciidocOutputDir ==null && jsonFile==null && pluginsDir ==null)
             throw new IllegalStateException("Nothing to do. Either -adoc, -json, or -pipeline is needed");
+        if (resume && journalFile==null)
+            throw new IllegalStateException("-resume needs the -journal of the run to resume");
 
-        Module.CoreModule coreModule = new Module.CoreModule(updateCenterJson.getJSONObject("core").getString("version"));
-        discover(addModule(coreModule), coreModule);
+        resolver = new DependencyResolver(localRepository, forkMaven, resolveTimeout);
+        extractor = new ExtensionPointsExtractor(fullAnalysis);
 
-        processPlugins(updateCenterJson.getJSONObject("plugins").values(), coreModule);
+        try (UpdateCenterReader updateCenter = new UpdateCenterReader(openJsonUrl(updateCenterJsonFile))) {
+            Module.CoreModule coreModule;
+            try (Profile.Timer t = profile.start(Profile.Phase.UPDATE_CENTER)) {
+                coreModule = new Module.CoreModule(updateCenter.getCoreVersion());
+            }
+            if (cacheDir != null) {
+                cache = new ExtractionCache(cacheDir, coreModule);
+            }
+            timings = new Timings(cacheDir != null ? new File(cacheDir, "timings.json") : null);
+            if (journalFile != null) {
+                journal = new Journal(journalFile, coreModule, resume);
+            }
+            try {
+                processPlugins(updateCenter, coreModule);
+            } finally {
+                if (journal != null) {
+                    journal.close();
+                }
+            }
+        }
 
         if (jsonFile!=null) {
-            JSONObject all = new JSONObject();
-            for (Family f : families.values()) {
-                if (f.definition==null)     continue;   // skip undefined extension points
-                JSONObject o = JSONObject.fromObject(f.definition.json);
+            try (Profile.Timer t = profile.start(Profile.Phase.JSON_OUTPUT)) {
+                generateJson();
+            }
+        }
 
-                JSONArray use = new JSONArray();
-                for (ExtensionSummary impl : f.implementations)
-                    use.add(impl.json);
-                o.put("implementations", use);
+        if (asciidocOutputDir !=null) {
+            try (Profile.Timer t = profile.start(Profile.Phase.ASCIIDOC_OUTPUT)) {
+                generateAsciidocReport();
+            }
+        }
+
+        if (reportFile!=null) {
+            new ProfileReport(profile, modules.values(), reportTop).write(reportFile);
+        }
+    }
 
-                all.put(f.getName(),o);
+    /**
+     * Writes out {@link #families} and {@link #modules} as JSON, one member at a time.
+     * Both are listed by name, so that runs over the same plugins produce the same file.
+     */
+    private void generateJson() throws IOException {
+        List<Family> defined = new ArrayList<>();
+        for (Family f : families.values()) {
+            if (f.definition==null)     continue;   // skip undefined extension points
+            defined.add(f);
+        }
+        defined.sort(Comparator.comparing(Family::getName));
+        Collection<Module> artifacts = new TreeMap<>(modules).values();
+
+        try (JsonWriter w = new JsonWriter(Files.newBufferedWriter(jsonFile.toPath(), StandardCharsets.UTF_8), 2)) {
+            w.beginObject(2);
+
+            w.name("extensionPoints").beginObject(defined.size());
+            for (Family f : defined) {
+                JSONObject definition = f.definition.toJSON();
+                w.name(f.getName()).beginObject(definition.size() + 1);
+                for (Object o : definition.entrySet()) {
+                    Entry<?,?> e = (Entry<?,?>) o;
+                    w.name(e.getKey().toString()).value(e.getValue());
+                }
+                w.name("implementations").beginArray(f.implementations.size());
+                for (ExtensionSummary impl : f.implementations)
+                    w.value(impl.toJSON());
+                w.end().end();
             }
+            w.end();
 
             // this object captures information about modules where extensions are defined/found.
-            final JSONObject artifacts = new JSONObject();
-            for (Module m : modules.values()) {
-                artifacts.put(m.gav, m.toJSON());
+            w.name("artifacts").beginObject(artifacts.size());
+            for (Module m : artifacts) {
+                w.name(m.gav).value(m.toJSON());
             }
+            w.end();
 
-            JSONObject container = new JSONObject();
-            container.put("extensionPoints",all);
-            container.put("artifacts",artifacts);
+            w.end();
+        }
+    }
+
+    /**
+     * Runs core and the plugins from the update center through the {@link Pipeline} and records {@link #modules}.
+     * <p>
+     * Core goes first, and the plugins are downloaded and resolved while it compiles. Plugins that an earlier run's
+     * results can be reused for follow as the update center is read, as they cost next to nothing. The others are only
+     * submitted once all of them are known, longest first, so that the run doesn't end with a few big plugins keeping
+     * one core busy each while the others sit idle. Waiting for the rest of the update center costs less than core
+     * takes to compile, and a stage only has room to reorder a few plugins among themselves.
+     */
+    private void processPlugins(UpdateCenterReader plugins, Module.CoreModule core) throws Exception {
+        Pipeline pipeline = new Pipeline(core);
+        try {
+            pipeline.submitCore();
+
+            try {
+                List<Pipeline.Job> selected = new ArrayList<>();
+                UpdateCenterReader.Plugin plugin;
+                while ((plugin = nextPlugin(plugins)) != null) {
+                    if (!args.isEmpty() && !args.contains(plugin.name)) {
+                        continue;   // skip
+                    }
+                    Pipeline.Job job = pipeline.new Job(plugin);
+                    if (job.cached != null) {
+                        pipeline.submit(job);
+                    } else {
+                        selected.add(job);
+                    }
+                }
+                selected.sort(Comparator.comparingLong((Pipeline.Job j) -> j.cost).reversed());
 
-            Files.writeString(jsonFile.toPath(), container.toString(2), StandardCharsets.UTF_8);
+                for (Pipeline.Job job : selected) {
+                    pipeline.submit(job);
+                }
+            } catch (RejectedExecutionException e) {
+                if (pipeline.coreFailure == null) {
+                    throw e;
+                }
+                // aborted, see below
+            }
+            pipeline.await();
+        } finally {
+            pipeline.shutdown();
+        }
+        if (pipeline.coreFailure != null) {
+            throw new IOException("Failed to process " + core.gav, pipeline.coreFailure);
         }
 
-        if (asciidocOutputDir !=null) {
-            generateAsciidocReport();
+        if (!failures.isEmpty()) {
+            System.err.println(failures.size() + " plugins failed:");
+            synchronized (failures) {
+                for (String f : failures) {
+                    System.err.println("  " + f);
+                }
+            }
+        }
+        timings.save();
+    }
+
+    private UpdateCenterReader.Plugin nextPlugin(UpdateCenterReader plugins) throws IOException {
+        try (Profile.Timer t = profile.start(Profile.Phase.UPDATE_CENTER)) {
+            return plugins.next();
         }
     }
 
     /**
-     * Walks over the plugins, record {@link #modules} and call {@link #discover(Module, Module.CoreModule)}.
-     * @param plugins
+     * Runs plugins through the stages of fetching their sources, resolving their dependencies, compiling and scanning
+     * them, and summarizing what was found. Every stage has its own threads and only a bounded number of plugins
+     * waiting for them, so that downloads keep the network busy while the number of concurrent javac runs is matched
+     * to the number of cores, and the memory they need. Among the plugins waiting in a stage, those expected to take
+     * longest go first.
      */
-    private void processPlugins(Collection<JSONObject> plugins, Module.CoreModule core) throws Exception {
-        int availableProcessors = Runtime.getRuntime().availableProcessors();
-        int nThreads = availableProcessors * 3;
-        System.out.printf("Running with %d threads%n", nThreads);
-        ExecutorService svc = Executors.newFixedThreadPool(nThreads);
-        try {
-            Set<Future<?>> futures = new HashSet<>();
-            for (final JSONObject plugin : plugins) {
-                final String artifactId = plugin.getString("name");
-                if (!args.isEmpty() && !args.contains(artifactId)) {
-                    continue;   // skip
+    private class Pipeline {
+        private final Module.CoreModule core;
+        private final Stage fetch;
+        private final Stage resolve;
+        private final Stage compile;
+        private final Stage summarize;
+        // the classes that the extractor keeps of the shared classpath jars count against the same heap
+        private final MemoryBudget budget = new MemoryBudget(heapFraction, ExtensionPointsExtractor.CLASS_PATH_CACHE_BYTES);
+        private final Watchdog watchdog = new Watchdog();
+        /**
+         * One party for each plugin that is still in the pipeline, plus one for the thread waiting for them.
+         */
+        private final Phaser pending = new Phaser(1);
+        /**
+         * Why core didn't make it through. There's no point in an index without it, so the pipeline is aborted then.
+         */
+        private volatile Throwable coreFailure;
+
+        Pipeline(Module.CoreModule core) {
+            this.core = core;
+            int availableProcessors = Runtime.getRuntime().availableProcessors();
+            int nFetch = fetchThreads > 0 ? fetchThreads : availableProcessors * 2;
+            int nResolve = resolveThreads > 0 ? resolveThreads : availableProcessors;
+            int nCompile = compileThreads > 0 ? compileThreads : availableProcessors;
+            System.out.printf("Running with %d fetch, %d resolve and %d compile threads%n", nFetch, nResolve, nCompile);
+            this.fetch = new Stage("fetch", nFetch, nFetch);
+            this.resolve = new Stage("resolve", nResolve, nResolve);
+            this.compile = new Stage("compile", nCompile, nCompile);
+            this.summarize = new Stage("summarize", nCompile, nCompile);
+        }
+
+        /**
+         * Runs core through the pipeline, ahead of every plugin in every stage.
+         */
+        void submitCore() throws InterruptedException {
+            pending.register();
+            addModule(core);
+            Job job = new Job(core);
+            job.next(fetch, job::fetch);
+        }
+
+        void submit(Job job) throws InterruptedException {
+            pending.register();
+            job.next(fetch, job::fetch);
+        }
+
+        /**
+         * Waits for all the submitted plugins to make it through the pipeline, or for the pipeline to be aborted.
+         */
+        void await() {
+            pending.arriveAndAwaitAdvance();
+        }
+
+        void shutdown() {
+            fetch.shutdown();
+            resolve.shutdown();
+            compile.shutdown();
+            summarize.shutdown();
+            watchdog.shutdown();
+        }
+
+        /**
+         * Gives up on the whole run, because core didn't make it.
+         */
+        private void abort(Throwable t) {
+            coreFailure = t;
+            fetch.abort();
+            resolve.abort();
+            compile.abort();
+            summarize.abort();
+            pending.forceTermination();
+        }
+
+        /**
+         * A plugin, or core, on its way through the pipeline.
+         */
+        private class Job {
+            /**
+             * What the update center says about the plugin, or null for core.
+             */
+            private final UpdateCenterReader.Plugin plugin;
+            private final String artifactId;
+            private Module module;
+            private JSONObject cached;
+            private SourceAndLibs sal;
+            private List<ClassOfInterestSummary> found;
+            private long sourcesSize;
+            /**
+             * How many milliseconds this plugin is expected to take, which is its priority in every stage.
+             */
+            private long cost;
+            private long started;
+            /**
+             * Set once the plugin is out of the pipeline, whether it made it through or not.
+             * The watchdog may give up on a plugin while its thread is still busy with it.
+             */
+            private final AtomicBoolean finished = new AtomicBoolean();
+
+            /**
+             * Looks up what an earlier run found in the plugin right away, so that it's not estimated to take as long
+             * as compiling it did.
+             */
+            Job(UpdateCenterReader.Plugin plugin) {
+                this.plugin = plugin;
+                this.artifactId = plugin.name;
+                if (asciidocOutputDir != null || jsonFile != null) {
+                    this.module = new Module.PluginModule(plugin.gav, plugin.url, plugin.title, plugin.scm);
+                    this.cached = loadCached(module);
                 }
+                this.cost = cached != null ? 0 : timings.estimate(plugin);
+            }
 
-                futures.add(svc.submit(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            System.out.println(artifactId);
-                            if (asciidocOutputDir !=null || jsonFile!=null) {
-                                Module pluginModule = addModule(new Module.PluginModule(plugin.getString("gav"), plugin.getString("url"), plugin.getString("title"), plugin.optString("scm")));
-                                discover(pluginModule, core);
-                            }
-                            if (pluginsDir!=null) {
-                                FileUtils.copyURLToFile(
-                                        new URL(plugin.getString("url")),
-                                        new File(pluginsDir, FilenameUtils.getName(plugin.getString("url")))
-                                );
-                            }
-                        } catch (Exception e) {
-                            System.err.println("Failed to process "+artifactId);
-                            // TODO record problem with this plugin so we can report on it
-                            e.printStackTrace();
-                        }
+            Job(Module.CoreModule core) {
+                this.plugin = null;
+                this.artifactId = core.artifactId;
+                this.module = core;
+                if (asciidocOutputDir != null || jsonFile != null) {
+                    this.cached = loadCached(core);
+                }
+                this.cost = Long.MAX_VALUE;
+            }
+
+            private void fetch() throws Exception {
+                started = System.nanoTime();
+                System.out.println(artifactId);
+                if (pluginsDir!=null && plugin!=null) {
+                    try (Watchdog.Deadline d = deadline("downloading the plugin", fetchTimeout)) {
+                        Downloader.download(
+                                new URL(plugin.url),
+                                new File(pluginsDir, FilenameUtils.getName(plugin.url)).toPath(),
+                                false
+                        );
                     }
-                }));
+                }
+                if (asciidocOutputDir ==null && jsonFile==null) {
+                    done();
+                    return;
+                }
+
+                if (plugin != null) {
+                    addModule(module);
+                }
+                if (cached != null) {
+                    next(summarize, this::summarize);
+                    return;
+                }
+                try (Watchdog.Deadline d = deadline("downloading sources", fetchTimeout)) {
+                    sal = SourceAndLibs.fetch(module);
+                }
+                sourcesSize = sal.getSourcesSize();
+                if (plugin != null) {
+                    cost = timings.estimate(plugin, sourcesSize);
+                }
+                next(resolve, this::resolve);
             }
-            for (Future<?> f : futures) {
-                f.get();
+
+            private void resolve() throws Exception {
+                try (Watchdog.Deadline d = deadline("resolving dependencies", resolveTimeout)) {
+                    sal.resolveDependencies(module, core, resolver);
+                }
+                next(compile, this::compile);
+            }
+
+            private void compile() throws Exception {
+                try (MemoryBudget.Permit permit = budget.acquire(sal);
+                     Watchdog.Deadline d = deadline("compiling", compileTimeout)) {
+                    // extract() closes it
+                    SourceAndLibs sal = this.sal;
+                    this.sal = null;
+                    List<ClassOfInterestSummary> summaries = new ArrayList<>();
+                    if (!extractor.extract(module, sal, c -> summaries.add(ExtensionPointListGenerator.this.summarize(c)))) {
+                        // neither index half a plugin, nor keep it as empty in the cache or the journal
+                        throw new IOException("javac failed on " + module.gav);
+                    }
+                    found = summaries;
+                }
+                next(summarize, this::summarize);
+            }
+
+            private void summarize() throws Exception {
+                if (cached != null) {
+                    restore(module, cached);
+                } else {
+                    register(module, found);
+                    if (plugin != null) {
+                        timings.record(plugin, module, sourcesSize);
+                    }
+                }
+                cached = null;
+                found = null;
+                done();
+            }
+
+            /**
+             * Gives up on this plugin if what the current thread is about to do takes longer than the given number of seconds.
+             * Core is never given up on, as it takes much longer than any plugin, and there's no index without it.
+             */
+            private Watchdog.Deadline deadline(String what, int timeout) {
+                return watchdog.start(plugin != null ? timeout : 0, () -> {
+                    if (finished.compareAndSet(false, true)) {
+                        System.err.println("Giving up on " + artifactId + " after " + timeout + "s of " + what);
+                        failures.add(artifactId + ": timed out " + what + " after " + getElapsed());
+                        pending.arriveAndDeregister();
+                    }
+                });
+            }
+
+            /**
+             * Hands this plugin over to the given stage, to continue with the given step there.
+             */
+            private void next(Stage stage, Step step) throws InterruptedException {
+                if (finished.get() || coreFailure != null) {
+                    // the watchdog gave up on it just as the last step completed, or on the whole run
+                    closeSources();
+                    return;
+                }
+                stage.submit(() -> {
+                    try {
+                        step.run();
+                    } catch (Exception e) {
+                        fail(e);
+                    } catch (Error e) {
+                        fail(e);
+                        throw e;
+                    }
+                }, cost);
+            }
+
+            private void fail(Throwable t) {
+                closeSources();
+                if (finished.get() || coreFailure != null) {
+                    return; // already given up on by the watchdog, or along with the whole run, which is why it failed
+                }
+                System.err.println("Failed to process "+artifactId);
+                t.printStackTrace();
+                failures.add(artifactId + ": " + t + " after " + getElapsed());
+                done();
+                if (plugin == null) {
+                    abort(t);
+                }
+            }
+
+            private void closeSources() {
+                if (sal != null) {
+                    try {
+                        sal.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    sal = null;
+                }
+            }
+
+            private String getElapsed() {
+                return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started) + "s";
+            }
+
+            private void done() {
+                if (finished.compareAndSet(false, true)) {
+                    pending.arriveAndDeregister();
+                }
             }
-        } finally {
-            svc.shutdown();
         }
     }
 
+    /**
+     * Work that one {@link Stage} of the {@link Pipeline} does on a plugin.
+     */
+    private interface Step {
+        void run() throws Exception;
+    }
+
     private void generateAsciidocReport() throws IOException {
         Map<Module,List<Family>> byModule = new TreeMap<>();
         for (Family f : families.values()) {
@@ -332,32 +743,116 @@ public class ExtensionPointListGenerator {
         }
     }
 
-    private void discover(Module m, Module.CoreModule core) throws IOException, InterruptedException {
-        if (asciidocOutputDir !=null || jsonFile!=null) {
-            for (ClassOfInterest e : extractor.extract(m, core)) {
-                synchronized (families) {
-                    System.out.println("Found "+e);
-
-                    if (e instanceof Extension) {
-                        Extension ee = (Extension) e;
-                        String key = ee.extensionPoint.getQualifiedName().toString();
-
-                        Family f = families.get(key);
-                        if (f==null)    families.put(key,f=new Family());
-
-                        ExtensionSummary es = new ExtensionSummary(f, ee);
-                        m.extensions.add(es);
-                        if (ee.isDefinition()) {
-                            assert f.definition == null;
-                            f.definition = es;
-                        } else {
-                            f.implementations.add(es);
-                        }
-                    }else if(e instanceof Action){
-                        m.actions.add(new ActionSummary((Action)e));
-                    }
+    /**
+     * Returns what an earlier run found in the given module, if it's in the {@link #journal} of the run being
+     * resumed or in the {@link #cache}.
+     */
+    private JSONObject loadCached(Module m) {
+        JSONObject resumed = journal != null ? journal.take(m) : null;
+        if (resumed != null) {
+            System.out.println("Using results of the resumed run for "+m.gav);
+            return resumed;
+        }
+        JSONObject cached = cache != null ? cache.load(m) : null;
+        if (cached != null) {
+            System.out.println("Using cached results for "+m.gav);
+        }
+        return cached;
+    }
+
+    /**
+     * Records what was found in the given module into {@link #families}.
+     * Modules can be summarized concurrently, but each one by a single thread.
+     */
+    void summarize(Module m, List<ClassOfInterest> found) throws IOException {
+        List<ClassOfInterestSummary> summaries = new ArrayList<>();
+        for (ClassOfInterest c : found) {
+            summaries.add(summarize(c));
+        }
+        register(m, summaries);
+    }
+
+    /**
+     * Captures what's needed of a class that was found, so that the compiler that found it can be let go.
+     */
+    private ClassOfInterestSummary summarize(ClassOfInterest c) {
+        System.out.println("Found "+c);
+
+        if (c instanceof Extension) {
+            Extension e = (Extension) c;
+            Family f = getFamily(e.extensionPoint.getQualifiedName().toString());
+            return new ExtensionSummary(f, e);
+        } else {
+            return new ActionSummary((Action) c);
+        }
+    }
+
+    /**
+     * Records the summaries of what was found in the given module into {@link #families}, and keeps them for later runs.
+     */
+    private void register(Module m, List<ClassOfInterestSummary> found) throws IOException {
+        try (Profile.Timer t = m.profile.start(Profile.Phase.SUMMARIZE)) {
+            for (ClassOfInterestSummary s : found) {
+                if (s instanceof ExtensionSummary) {
+                    add(m, (ExtensionSummary) s);
+                } else {
+                    m.actions.add((ActionSummary) s);
                 }
             }
+            t.addClasses(found.size());
+
+            if (cache != null || journal != null) {
+                JSONObject record = m.toRecord();
+                if (cache != null) {
+                    cache.store(m, record);
+                }
+                if (journal != null) {
+                    journal.append(m, record);
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers what {@link Module#toRecord()} captured in an earlier run as if it was just discovered.
+     */
+    private void restore(Module m, JSONObject record) throws IOException {
+        try (Profile.Timer t = m.profile.start(Profile.Phase.SUMMARIZE)) {
+            for (Object o : record.getJSONArray("extensions")) {
+                JSONObject r = (JSONObject) o;
+                Family f = getFamily(r.getString("extensionPoint"));
+                add(m, new ExtensionSummary(f, m, r));
+            }
+            for (Object o : record.getJSONArray("actions")) {
+                m.actions.add(new ActionSummary(m, (JSONObject) o));
+            }
+            t.addClasses(m.extensions.size() + m.actions.size());
+
+            if (journal != null) {
+                journal.append(m, record);
+            }
+        }
+    }
+
+    /**
+     * All the families found so far.
+     */
+    Collection<Family> getFamilies() {
+        return Collections.unmodifiableCollection(families.values());
+    }
+
+    private Family getFamily(String extensionPoint) {
+        return families.computeIfAbsent(extensionPoint, unused -> new Family());
+    }
+
+    private void add(Module m, ExtensionSummary es) {
+        m.extensions.add(es);
+        Family f = es.family;
+        if (es.isDefinition) {
+            assert f.definition == null;
+            f.definition = es;
+        } else {
+            f.implementations.add(es);
         }
     }
 }
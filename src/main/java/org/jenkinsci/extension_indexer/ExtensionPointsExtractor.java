@@ -3,6 +3,8 @@ package org.jenkinsci.extension_indexer;
 import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.TreePathScanner;
 import com.sun.source.util.Trees;
@@ -15,6 +17,7 @@ import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
 import javax.tools.DiagnosticListener;
 import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
 import javax.tools.StandardJavaFileManager;
 import javax.tools.StandardLocation;
@@ -25,9 +28,12 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 /**
  * Finds the defined extension points in a HPI.
@@ -36,12 +42,53 @@ import java.util.Map;
  * @author Kohsuke Kawaguchi
  */
 public class ExtensionPointsExtractor {
-    public List<ClassOfInterest> extract(Module module, Module.CoreModule core) throws IOException, InterruptedException {
-        return extract(module,SourceAndLibs.create(module, core));
+    /**
+     * If true, attribute and flow-analyze every method body like a regular compilation does.
+     * Otherwise only enter the classes and attribute what the scanner actually looks at.
+     */
+    private final boolean fullAnalysis;
+    /**
+     * Jars on the classpath of more than one module, shared by all the compilations.
+     */
+    private final ClassPathCache classPathCache = new ClassPathCache(CLASS_PATH_CACHE_BYTES);
+
+    /**
+     * Heap that {@link #classPathCache} keeps class files in, at most, for as long as the extractor is around.
+     */
+    static final long CLASS_PATH_CACHE_BYTES = Runtime.getRuntime().maxMemory() / 16;
+
+    public ExtensionPointsExtractor() {
+        this(false);
+    }
+
+    public ExtensionPointsExtractor(boolean fullAnalysis) {
+        this.fullAnalysis = fullAnalysis;
+    }
+
+    public List<ClassOfInterest> extract(Module module, Module.CoreModule core, DependencyResolver resolver) throws IOException, InterruptedException {
+        return extract(module,SourceAndLibs.create(module, core, resolver));
     }
 
-    public List<ClassOfInterest> extract(final Module module, final SourceAndLibs sal) throws IOException {
+    public List<ClassOfInterest> extract(Module module, SourceAndLibs sal) throws IOException {
+        List<ClassOfInterest> r = new ArrayList<>();
+        if (!extract(module, sal, r::add)) {
+            return Collections.emptyList();
+        }
+        return r;
+    }
+
+    /**
+     * Passes every class of interest in the module to the given sink as soon as it is found.
+     * <p>
+     * Each {@link ClassOfInterest} holds on to the compiler, so the sink is expected to take what it needs from it
+     * right away rather than keep it. That way the compiler state of the module is gone once this method returns.
+     *
+     * @return
+     *      false if javac failed on the module, in which case the sink may have gotten only some of its classes.
+     */
+    public boolean extract(final Module module, final SourceAndLibs sal, final Sink sink) throws IOException {
         StandardJavaFileManager fileManager = null;
+        JavaFileManager taskFileManager = null;
         try {
             JavaCompiler javac1 = ToolProvider.getSystemJavaCompiler();
             DiagnosticListener<JavaFileObject> errorListener = createErrorListener();
@@ -49,6 +96,7 @@ public class ExtensionPointsExtractor {
 
 
             fileManager.setLocation(StandardLocation.CLASS_PATH, sal.getClassPath());
+            taskFileManager = classPathCache.wrap(fileManager, sal.getClassPath());
 
             // annotation processing appears to cause the source files to be reparsed
             // (even though I couldn't find exactly where it's done), which causes
@@ -57,29 +105,66 @@ public class ExtensionPointsExtractor {
             // So for now, don't perform annotation processing
             List<String> options = List.of("-proc:none");
 
-            Iterable<? extends JavaFileObject> files = fileManager.getJavaFileObjectsFromFiles(sal.getSourceFiles());
-            JavaCompiler.CompilationTask task = javac1.getTask(null, fileManager, errorListener, options, null, files);
+            Iterable<? extends JavaFileObject> files = fileManager.getJavaFileObjectsFromPaths(sal.getSourceFiles());
+            JavaCompiler.CompilationTask task = javac1.getTask(null, taskFileManager, errorListener, options, null, files);
             final JavacTask javac = (JavacTask) task;
             final Trees trees = Trees.instance(javac);
             final Elements elements = javac.getElements();
             final Types types = javac.getTypes();
+            // javac doesn't notice interrupts by itself, so that the Watchdog can cancel a compilation that takes too long
+            javac.addTaskListener(new TaskListener() {
+                @Override
+                public void started(TaskEvent e) {
+                    checkInterrupted(module);
+                }
+            });
 
-            Iterable<? extends CompilationUnitTree> parsed = javac.parse();
-            javac.analyze();
+            final List<CompilationUnitTree> parsed = new ArrayList<>();
+            try (Profile.Timer t = module.profile.start(Profile.Phase.PARSE)) {
+                t.setSize(sal.getSourcesSize());
+                javac.parse().forEach(parsed::add);
+                t.addClasses(parsed.size());
+            }
+
+            final TypeElement extensionPoint;
+            final TypeElement action;
+            try (Profile.Timer t = module.profile.start(Profile.Phase.ANALYZE)) {
+                t.setSize(sal.getSourcesSize());
+                if (fullAnalysis) {
+                    javac.analyze();
+                }
 
-            final List<ClassOfInterest> r = new ArrayList<>();
+                // Unless everything was analyzed above, the first type lookup is what makes javac enter the parsed classes.
+                // From there on, class headers are completed lazily as the scanner walks up the type hierarchy, and
+                // Trees.getElement() attributes the body of the enclosing class on demand when it runs into an anonymous
+                // or local class, which is the only kind of class that doesn't get a symbol before attribution.
+                extensionPoint = elements.getTypeElement("hudson.ExtensionPoint");
+                action = elements.getTypeElement("hudson.model.Action");
+            }
+
+            final int[] count = new int[1];
+            final HitCounter hierarchyCache = new HitCounter("type hierarchy cache");
+            final HitCounter viewCache = new HitCounter("view cache");
 
             // discover all compiled types
             TreePathScanner<?,?> classScanner = new TreePathScanner<Void,Void>() {
-                final TypeElement extensionPoint = elements.getTypeElement("hudson.ExtensionPoint");
-                final TypeElement action = elements.getTypeElement("hudson.model.Action");
+                /**
+                 * Extension points that a type implements, including itself, so that shared ancestry like
+                 * {@code Describable} and diamond-shaped interface graphs are only walked once per compilation.
+                 */
+                final Map<TypeElement,Set<TypeElement>> extensionPoints = new HashMap<>();
+                /**
+                 * Views of a type merged with those of its ancestors.
+                 */
+                final Map<TypeElement,Map<String,String>> views = new HashMap<>();
 
                 @Override
                 public Void visitClass(ClassTree ct, Void ignored) {
+                    checkInterrupted(module);
                     TreePath path = getCurrentPath();
                     TypeElement e = (TypeElement) trees.getElement(path);
                     if (e != null) {
-                        checkIfExtension(path, e, e);
+                        checkIfExtension(path, e);
                         checkIfAction(path, e);
                     }
                     return super.visitClass(ct, ignored);
@@ -90,65 +175,107 @@ public class ExtensionPointsExtractor {
                  */
                 private void checkIfAction(TreePath path, TypeElement e) {
                     if (types.isSubtype(e.asType(), action.asType())) {
-                        r.add(new Action(module, javac, trees, e, path, collectViews(e)));
+                        count[0]++;
+                        sink.found(new Action(module, javac, trees, e, path, new HashMap<>(collectViews(e))));
+                    }
+                }
+
+                /**
+                 * Create a record for every extension point {@code root} implements.
+                 */
+                private void checkIfExtension(TreePath pathToRoot, TypeElement root) {
+                    for (TypeElement e : findExtensionPoints(root)) {
+                        count[0]++;
+                        sink.found(new Extension(module, javac, trees, root, pathToRoot, e, new HashMap<>(collectViews(e))));
                     }
                 }
 
                 /**
                  * Recursively ascend the type hierarchy toward {@link Object} and find all extension points
-                 * {@code root} implement.
+                 * {@code e} implement.
                  */
-                private void checkIfExtension(TreePath pathToRoot, TypeElement root, TypeElement e) {
-                    if (e==null)    return; // if the compilation fails, this can happen
+                private Set<TypeElement> findExtensionPoints(TypeElement e) {
+                    if (e==null)    return Collections.emptySet(); // if the compilation fails, this can happen
+
+                    Set<TypeElement> found = extensionPoints.get(e);
+                    if (found != null) {
+                        hierarchyCache.hit();
+                        return found;
+                    }
+                    hierarchyCache.miss();
 
+                    found = new LinkedHashSet<>();
                     for (TypeMirror i : e.getInterfaces()) {
                         if (types.asElement(i).equals(extensionPoint)){
-                            r.add(new Extension(module, javac, trees, root, pathToRoot, e, collectViews(e)));
+                            found.add(e);
                         }
-                        checkIfExtension(pathToRoot,root,(TypeElement)types.asElement(i));
+                        found.addAll(findExtensionPoints((TypeElement)types.asElement(i)));
                     }
                     TypeMirror s = e.getSuperclass();
                     if (!(s instanceof NoType))
-                        checkIfExtension(pathToRoot,root,(TypeElement)types.asElement(s));
+                        found.addAll(findExtensionPoints((TypeElement)types.asElement(s)));
+
+                    extensionPoints.put(e, found);
+                    return found;
                 }
 
                 /**
                  * Collect views recursively going up the ancestors.
                  */
                 private Map<String, String> collectViews(TypeElement clazz) {
-                    Map<String, String> views;
+                    Map<String, String> found = views.get(clazz);
+                    if (found != null) {
+                        viewCache.hit();
+                        return found;
+                    }
+                    viewCache.miss();
 
                     TypeMirror s = clazz.getSuperclass();
                     if (!(s instanceof NoType))
-                        views = collectViews((TypeElement)types.asElement(s));
+                        found = new HashMap<>(collectViews((TypeElement)types.asElement(s)));
                     else
-                        views = new HashMap<>();
+                        found = new HashMap<>();
 
                     for (String v : sal.getViewFiles(clazz.getQualifiedName().toString())) {
                         // views defined in subtypes override those defined in the base type
-                        views.put(FilenameUtils.getBaseName(v),v);
+                        found.put(FilenameUtils.getBaseName(v),v);
                     }
 
-                    return views;
+                    views.put(clazz, found);
+                    return found;
                 }
             };
 
-            for( CompilationUnitTree u : parsed )
-                classScanner.scan(u,null);
+            try (Profile.Timer t = module.profile.start(Profile.Phase.SCAN)) {
+                t.setSize(sal.getSourcesSize());
+                for( CompilationUnitTree u : parsed )
+                    classScanner.scan(u,null);
+                t.addClasses(count[0]);
+            }
 
-            return r;
+            System.out.println("Scanned " + module.gav + ": " + hierarchyCache + ", " + viewCache);
+            return true;
         } catch (AssertionError e) {
             // javac has thrown this exception for some input
             System.err.println("Failed to analyze "+module.gav);
             e.printStackTrace();
-            return Collections.emptyList();
+            return false;
         } finally {
-            if (fileManager!=null)
+            // closes fileManager too
+            if (taskFileManager!=null)
+                taskFileManager.close();
+            else if (fileManager!=null)
                 fileManager.close();
             sal.close();
         }
     }
 
+    private static void checkInterrupted(Module module) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Interrupted while compiling " + module.gav);
+        }
+    }
+
     private void populateViewMap(List<File> files, Map<String,String> views){
         for(File f: files) {
             String fqName = f.getAbsolutePath();
@@ -169,6 +296,43 @@ public class ExtensionPointsExtractor {
         }
     }
 
+    /**
+     * Counts how often a memoized lookup was answered from its cache.
+     */
+    static final class HitCounter {
+        private final String name;
+        private int hits;
+        private int lookups;
+
+        HitCounter(String name) {
+            this.name = name;
+        }
+
+        void hit() {
+            hits++;
+            lookups++;
+        }
+
+        void miss() {
+            lookups++;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s hit %d of %d lookups (%.0f%%)", name, hits, lookups, lookups == 0 ? 0.0 : 100.0 * hits / lookups);
+        }
+    }
+
+    /**
+     * Receives the classes of interest from {@link #extract(Module, SourceAndLibs, Sink)}.
+     */
+    public interface Sink {
+        /**
+         * Called for each class of interest, while the compiler that found it is still open.
+         */
+        void found(ClassOfInterest c);
+    }
+
     protected DiagnosticListener<JavaFileObject> createErrorListener() {
         //TODO report
         return System.out::println;
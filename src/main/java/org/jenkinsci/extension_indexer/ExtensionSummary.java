@@ -9,7 +9,6 @@ import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Captures key details of {@link Extension} but without keeping much of the work in memory.
@@ -17,24 +16,9 @@ import java.util.Map;
  * @author Kohsuke Kawaguchi
  * @see Extension
  */
-public class ExtensionSummary {
-    /**
-     * Back reference to the module where this implementation was found.
-     */
-    public final Module module;
-
+public class ExtensionSummary extends ClassOfInterestSummary {
     public final String extensionPoint;
 
-    public final String implementation;
-
-    public final String documentation;
-
-    public final JSONObject json;
-
-    public final boolean hasView;
-
-    public final Map<String,String> views;
-
     public final String packageName;
 
     public final String className;
@@ -53,18 +37,45 @@ public class ExtensionSummary {
     public final Family family;
 
     public ExtensionSummary(Family f, Extension e) {
+        super(e);
         this.family = f;
         this.isDefinition = e.isDefinition();
-        this.module = e.module;
-        this.extensionPoint = e.extensionPoint.getQualifiedName().toString();
-        this.implementation = e.implementation!=null ? e.implementation.getQualifiedName().toString() : null;
-        this.documentation = e.getDocumentation();
-        this.hasView = e.hasView();
-        this.packageName = findPackageName(e.implementation);
+        this.extensionPoint = Symbols.intern(e.extensionPoint.getQualifiedName().toString());
+        this.packageName = Symbols.intern(findPackageName(e.implementation));
         this.className = findClassName(e.implementation);
         this.topLevelClassName = findTopLevelClassName(e.implementation);
-        this.views = e.views;
-        this.json = e.toJSON();
+    }
+
+    /**
+     * Restores a summary from what {@link #toRecord()} produced in an earlier run.
+     */
+    public ExtensionSummary(Family f, Module module, JSONObject record) {
+        super(module, record);
+        this.family = f;
+        this.isDefinition = record.getBoolean("isDefinition");
+        this.extensionPoint = Symbols.intern(record.getString("extensionPoint"));
+        this.packageName = Symbols.intern(record.getString("packageName"));
+        this.className = optString(record, "className");
+        this.topLevelClassName = record.getString("topLevelClassName");
+    }
+
+    @Override
+    public JSONObject toRecord() {
+        JSONObject o = super.toRecord();
+        o.put("isDefinition", isDefinition);
+        o.put("extensionPoint", extensionPoint);
+        o.put("packageName", packageName);
+        o.put("className", className);
+        o.put("topLevelClassName", topLevelClassName);
+        return o;
+    }
+
+    @Override
+    public JSONObject toJSON() {
+        JSONObject i = super.toJSON();
+        if (!isDefinition)
+            i.put("extensionPoint",extensionPoint);
+        return i;
     }
 
     private String findPackageName(TypeElement element) {
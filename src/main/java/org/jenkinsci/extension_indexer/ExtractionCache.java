@@ -0,0 +1,83 @@
+package org.jenkinsci.extension_indexer;
+
+import net.sf.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Persistent on-disk cache of what {@link ExtensionPointListGenerator} found in each module.
+ * <p>
+ * Entries are keyed by the module GAV, the core GAV the module was compiled against, and the version
+ * of the indexer itself, so that an unchanged plugin doesn't need to be downloaded, resolved and
+ * compiled again on the next run.
+ */
+class ExtractionCache {
+    private final File dir;
+    private final String coreGav;
+
+    ExtractionCache(File dir, Module.CoreModule core) {
+        this.dir = dir;
+        this.coreGav = core.gav;
+    }
+
+    /**
+     * Returns the record previously stored for the given module via {@link #store(Module, JSONObject)},
+     * or null if there's none that's usable for this run.
+     */
+    JSONObject load(Module m) {
+        File f = getFile(m);
+        if (!f.exists()) {
+            return null;
+        }
+        try {
+            JSONObject o = JSONObject.fromObject(Files.readString(f.toPath(), StandardCharsets.UTF_8));
+            if (!m.gav.equals(o.optString("gav")) || !coreGav.equals(o.optString("core")) || !getIndexerVersion().equals(o.optString("indexer")) || o.optInt("format") != FORMAT) {
+                return null;
+            }
+            return o.getJSONObject("record");
+        } catch (IOException | RuntimeException e) {
+            // a corrupted entry is no worse than a missing one
+            System.err.println("Failed to read cached results for " + m.gav);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    void store(Module m, JSONObject record) throws IOException {
+        JSONObject o = new JSONObject();
+        o.put("gav", m.gav);
+        o.put("core", coreGav);
+        o.put("indexer", getIndexerVersion());
+        o.put("format", FORMAT);
+        o.put("record", record);
+
+        Path f = getFile(m).toPath();
+        Files.createDirectories(f.getParent());
+        // write and rename, so that concurrent or interrupted runs never see a partial entry
+        Path tmp = Files.createTempFile(f.getParent(), f.getFileName().toString(), ".tmp");
+        Files.writeString(tmp, o.toString(), StandardCharsets.UTF_8);
+        Files.move(tmp, f, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private File getFile(Module m) {
+        return new File(dir, m.group.replace('.', '/') + "/" + m.artifactId + "/" + m.version + ".json");
+    }
+
+    /**
+     * Version of the indexer from the jar manifest, so that results from an older indexer are not reused.
+     */
+    static String getIndexerVersion() {
+        String v = ExtractionCache.class.getPackage().getImplementationVersion();
+        return v != null ? v : "development";
+    }
+
+    /**
+     * Version of the layout of the records, so that a development build doesn't trip over records of an older layout.
+     */
+    static final int FORMAT = 3;
+}
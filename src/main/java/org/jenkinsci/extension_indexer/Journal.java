@@ -0,0 +1,158 @@
+package org.jenkinsci.extension_indexer;
+
+import net.sf.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only record of the modules a run has completed, so that a run that died half way can be resumed
+ * without starting over.
+ * <p>
+ * The file has one JSON object per line. The first one says which core and indexer the run was for, and each
+ * of the others has the GAV of a completed module and what {@link Module#toRecord()} captured of it.
+ * Lines are only synced to disk every so often, so a crash can lose the last few modules, which are then
+ * simply processed again. A line that was cut short by a crash is dropped when the journal is resumed.
+ */
+final class Journal implements Closeable {
+    private final FileChannel channel;
+    /**
+     * Records of the modules that the run being resumed completed, and that this run has yet to pick up.
+     */
+    private final Map<String,JSONObject> resumed = new HashMap<>();
+    /**
+     * GAVs of the modules that are in the file already.
+     */
+    private final Set<String> journaled = new HashSet<>();
+    private int unsynced;
+    private long lastSync = System.nanoTime();
+
+    /**
+     * Opens the journal for a run against the given core. Unless resuming, or if the journal is of a run against
+     * another core, it's started over.
+     */
+    Journal(File file, Module.CoreModule core, boolean resume) throws IOException {
+        long end = resume && file.exists() ? read(file, core) : 0;
+        if (end > 0) {
+            System.out.println("Resuming with " + resumed.size() + " modules completed by the previous run");
+        } else if (resume) {
+            System.out.println("Nothing to resume from in " + file + ", starting over");
+        }
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // drop whatever follows the last complete line, so that new lines don't get appended to a partial one
+        channel.truncate(end);
+        channel.position(end);
+        if (end == 0) {
+            JSONObject header = new JSONObject();
+            header.put("core", core.gav);
+            header.put("indexer", ExtractionCache.getIndexerVersion());
+            header.put("format", ExtractionCache.FORMAT);
+            write(header);
+            sync();
+        }
+    }
+
+    /**
+     * Reads what the run being resumed completed.
+     *
+     * @return the length of the part of the file that's usable, or 0 if none of it is
+     */
+    private long read(File file, Module.CoreModule core) throws IOException {
+        long end = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                try {
+                    JSONObject o = JSONObject.fromObject(line.toString(StandardCharsets.UTF_8));
+                    if (end == 0) {
+                        if (!core.gav.equals(o.optString("core")) || !ExtractionCache.getIndexerVersion().equals(o.optString("indexer")) || o.optInt("format") != ExtractionCache.FORMAT) {
+                            System.out.println(file + " is of a run with another core or indexer");
+                            return 0;
+                        }
+                    } else {
+                        String gav = o.getString("gav");
+                        resumed.put(gav, o.getJSONObject("record"));
+                        journaled.add(gav);
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("Ignoring " + file + " from byte " + end + " on, which is corrupted");
+                    break;
+                }
+                end += line.size() + 1;
+                line.reset();
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Returns what the run being resumed found in the given module, or null if it didn't complete it.
+     * Each record is only handed out once.
+     */
+    synchronized JSONObject take(Module m) {
+        return resumed.remove(m.gav);
+    }
+
+    /**
+     * Records that the given module is completed, unless it already is.
+     */
+    synchronized void append(Module m, JSONObject record) throws IOException {
+        if (!journaled.add(m.gav)) {
+            return;
+        }
+        JSONObject o = new JSONObject();
+        o.put("gav", m.gav);
+        o.put("record", record);
+        write(o);
+        if (++unsynced >= SYNC_RECORDS || System.nanoTime() - lastSync >= SYNC_NANOS) {
+            sync();
+        }
+    }
+
+    private void write(JSONObject o) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap((o.toString() + '\n').getBytes(StandardCharsets.UTF_8));
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    private void sync() throws IOException {
+        channel.force(false);
+        unsynced = 0;
+        lastSync = System.nanoTime();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * At most this many modules are lost when the machine crashes, or whatever was completed in {@link #SYNC_NANOS}.
+     */
+    private static final int SYNC_RECORDS = 20;
+    private static final long SYNC_NANOS = TimeUnit.SECONDS.toNanos(5);
+}
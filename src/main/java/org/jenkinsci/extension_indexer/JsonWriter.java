@@ -0,0 +1,161 @@
+package org.jenkinsci.extension_indexer;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import net.sf.json.JSONUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+
+/**
+ * Writes JSON out as it goes, laid out exactly the way json-lib's {@code toString(int)} would lay out the same
+ * tree, so that the output can be streamed without building the tree or the string first.
+ * <p>
+ * json-lib puts containers with a single member on one line, so the size of every object and array has to be
+ * known when it is started.
+ */
+final class JsonWriter implements Closeable {
+    private final Writer out;
+    private final int indentFactor;
+    private final Deque<Container> stack = new ArrayDeque<>();
+    /**
+     * True between the name of an object member and its value.
+     */
+    private boolean named;
+
+    JsonWriter(Writer out, int indentFactor) {
+        this.out = out;
+        this.indentFactor = indentFactor;
+    }
+
+    JsonWriter beginObject(int size) throws IOException {
+        return begin('{', '}', size);
+    }
+
+    JsonWriter beginArray(int size) throws IOException {
+        return begin('[', ']', size);
+    }
+
+    private JsonWriter begin(char open, char close, int size) throws IOException {
+        int indent = nextValue();
+        out.write(open);
+        stack.push(new Container(close, size, indent));
+        return this;
+    }
+
+    /**
+     * Writes the name of the next member of the current object.
+     */
+    JsonWriter name(String name) throws IOException {
+        Container c = stack.peek();
+        if (c == null || c.close != '}' || named) {
+            throw new IllegalStateException("Not expecting a name");
+        }
+        nextMember(c);
+        out.write(JSONUtils.quote(name));
+        out.write(": ");
+        named = true;
+        return this;
+    }
+
+    /**
+     * Writes a value, which may be a json-lib {@link JSONObject} or {@link JSONArray} that is written out member
+     * by member.
+     */
+    JsonWriter value(Object v) throws IOException {
+        if (v instanceof JSONObject && !((JSONObject) v).isNullObject()) {
+            Map<?,?> o = (JSONObject) v;
+            beginObject(o.size());
+            for (Map.Entry<?,?> e : o.entrySet()) {
+                name(e.getKey().toString()).value(e.getValue());
+            }
+            return end();
+        }
+        if (v instanceof JSONArray) {
+            JSONArray a = (JSONArray) v;
+            beginArray(a.size());
+            for (int i = 0; i < a.size(); i++) {
+                value(a.get(i));
+            }
+            return end();
+        }
+        int indent = nextValue();
+        out.write(JSONUtils.valueToString(v, indentFactor, indent));
+        return this;
+    }
+
+    /**
+     * Ends the current object or array.
+     */
+    JsonWriter end() throws IOException {
+        Container c = stack.pop();
+        if (c.count != c.size || named) {
+            throw new IllegalStateException("Expected " + c.size + " members but got " + c.count);
+        }
+        if (c.size > 1) {
+            out.write('\n');
+            indent(c.indent);
+        }
+        out.write(c.close);
+        return this;
+    }
+
+    /**
+     * Gets ready to write a value, and returns the indentation json-lib would use for it.
+     */
+    private int nextValue() throws IOException {
+        Container c = stack.peek();
+        if (c == null) {
+            return 0;
+        }
+        if (named) {
+            named = false;
+        } else if (c.close == ']') {
+            nextMember(c);
+        } else {
+            throw new IllegalStateException("Expecting a name");
+        }
+        return c.size > 1 ? c.indent + indentFactor : c.indent;
+    }
+
+    private void nextMember(Container c) throws IOException {
+        if (++c.count > c.size) {
+            throw new IllegalStateException("Expected " + c.size + " members");
+        }
+        if (c.size > 1) {
+            out.write(c.count == 1 ? "\n" : ",\n");
+            indent(c.indent + indentFactor);
+        }
+    }
+
+    private void indent(int n) throws IOException {
+        for (int i = 0; i < n; i++) {
+            out.write(' ');
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private static final class Container {
+        final char close;
+        final int size;
+        /**
+         * Indentation of the line the container starts on.
+         */
+        final int indent;
+        int count;
+
+        Container(char close, int size, int indent) {
+            this.close = close;
+            this.size = size;
+            this.indent = indent;
+        }
+    }
+}
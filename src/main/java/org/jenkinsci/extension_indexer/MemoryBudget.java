@@ -0,0 +1,72 @@
+package org.jenkinsci.extension_indexer;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Admission control for javac runs, so that a few large modules compiling at the same time don't run the JVM
+ * out of memory, while lots of small ones can still compile side by side.
+ * <p>
+ * The heap a run needs is estimated from the size of the sources jar and of the classpath, and taken out of
+ * a budget that is a fraction of the maximum heap. A module whose estimate exceeds the whole budget still gets
+ * to run, but only on its own.
+ */
+final class MemoryBudget {
+    /**
+     * Budget in MB.
+     */
+    private final int total;
+    private final Semaphore available;
+
+    /**
+     * @param fraction
+     *      Fraction of the maximum heap that javac runs may use together.
+     * @param reserved
+     *      Bytes of that fraction that are taken up for the whole run by something else.
+     */
+    MemoryBudget(double fraction, long reserved) {
+        this.total = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (Runtime.getRuntime().maxMemory() * fraction - reserved) / MB));
+        // fair, so that a large module waiting for the budget isn't overtaken by small ones forever
+        this.available = new Semaphore(total, true);
+    }
+
+    /**
+     * Waits until the budget allows compiling the given sources, and takes the estimated cost out of it
+     * until the returned permit is closed.
+     */
+    Permit acquire(SourceAndLibs sal) throws InterruptedException {
+        int cost = estimate(sal);
+        available.acquire(cost);
+        return new Permit(cost);
+    }
+
+    /**
+     * Estimated heap needed to compile the given sources, in MB.
+     */
+    int estimate(SourceAndLibs sal) {
+        // rough figures: compressed sources expand into trees and symbols many times their size, while
+        // only the index and the classes actually referenced are read from the classpath
+        long bytes = BASELINE + sal.getSourcesSize() * SOURCES_FACTOR + sal.getClassPathSize() / CLASSPATH_DIVISOR;
+        return (int) Math.min(total, Math.max(1, bytes / MB));
+    }
+
+    final class Permit implements AutoCloseable {
+        private final int cost;
+
+        private Permit(int cost) {
+            this.cost = cost;
+        }
+
+        @Override
+        public void close() {
+            available.release(cost);
+        }
+    }
+
+    private static final long MB = 1024 * 1024;
+    /**
+     * Heap used by a javac instance regardless of the input.
+     */
+    private static final long BASELINE = 32 * MB;
+    private static final long SOURCES_FACTOR = 40;
+    private static final long CLASSPATH_DIVISOR = 4;
+}
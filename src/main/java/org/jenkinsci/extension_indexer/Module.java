@@ -3,6 +3,7 @@ package org.jenkinsci.extension_indexer;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -32,6 +33,10 @@ abstract class Module implements Comparable<Module> {
      * Actions that are found inside this module.
      */
     final List<ActionSummary> actions = new ArrayList<>();
+    /**
+     * Where the time went while processing this module.
+     */
+    final Profile profile;
 
     private static final String JENKINS_CORE_URL_NAME = "jenkins-core";
 
@@ -55,6 +60,7 @@ abstract class Module implements Comparable<Module> {
         this.group = splitGav[0];
         this.artifactId = splitGav[1];
         this.version = splitGav[2];
+        this.profile = new Profile(gav);
     }
 
     protected String simplifyDisplayName(String displayName) {
@@ -98,7 +104,7 @@ abstract class Module implements Comparable<Module> {
         JSONArray extensionPoints = new JSONArray();
         int viewCount=0;
         for (ExtensionSummary es : this.extensions) {
-            (es.isDefinition ? extensionPoints : extensions).add(es.json);
+            (es.isDefinition ? extensionPoints : extensions).add(es.toJSON());
             defs.add(es.family.definition);
 
             if(es.hasView){
@@ -107,7 +113,7 @@ abstract class Module implements Comparable<Module> {
         }
 
         for(ActionSummary action:this.actions){
-            JSONObject jsonObject = action.json;
+            JSONObject jsonObject = action.toJSON();
             actions.add(jsonObject);
             if(action.hasView){
                 viewCount++;
@@ -123,16 +129,41 @@ abstract class Module implements Comparable<Module> {
         o.put("extensionPoints",extensionPoints);   // extension points defined in this module
         o.put("actions", actions); // actions implemented in this module
 
+        // the set is only there to remove duplicates, list them in a stable order
+        defs.remove(null);
+        List<ExtensionSummary> sortedDefs = new ArrayList<>(defs);
+        sortedDefs.sort(Comparator.comparing((ExtensionSummary es) -> es.extensionPoint)
+                .thenComparing(es -> es.className, Comparator.nullsFirst(Comparator.naturalOrder())));
+
         JSONArray uses = new JSONArray();
-        for (ExtensionSummary es : defs) {
-            if (es==null)   continue;
-            uses.add(es.json);
+        for (ExtensionSummary es : sortedDefs) {
+            uses.add(es.toJSON());
         }
         o.put("uses", uses);    // extension points that this module consumes
 
         return o;
     }
 
+    /**
+     * Captures everything that was found in this module, so that it can be persisted between runs.
+     *
+     * @see ExtractionCache
+     */
+    JSONObject toRecord() {
+        JSONArray extensions = new JSONArray();
+        for (ExtensionSummary es : this.extensions) {
+            extensions.add(es.toRecord());
+        }
+        JSONArray actions = new JSONArray();
+        for (ActionSummary as : this.actions) {
+            actions.add(as.toRecord());
+        }
+        JSONObject o = new JSONObject();
+        o.put("extensions", extensions);
+        o.put("actions", actions);
+        return o;
+    }
+
     @Override
     public int compareTo(Module o) {
         String self = this.getUrlName();
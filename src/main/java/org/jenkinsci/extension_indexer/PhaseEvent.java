@@ -0,0 +1,40 @@
+package org.jenkinsci.extension_indexer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a {@link Profile.Phase} of the work on a module, so that a recording of a run
+ * shows the phases on the same timeline as GC pauses, lock contention and I/O.
+ * <p>
+ * Costs next to nothing unless a recording with this event enabled is running.
+ */
+@Name("org.jenkinsci.extension_indexer.Phase")
+@Label("Extension Indexer Phase")
+@Category("Extension Indexer")
+@StackTrace(false)
+final class PhaseEvent extends Event {
+    @Label("Module")
+    @Description("GAV of the module, or null for work that isn't specific to a module")
+    String module;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Size")
+    @Description("Size of the sources jar or the classpath the phase worked on")
+    @DataAmount
+    long size;
+
+    @Label("Bytes Transferred")
+    @DataAmount
+    long bytesTransferred;
+
+    @Label("Classes")
+    int classes;
+}
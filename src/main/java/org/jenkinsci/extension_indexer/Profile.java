@@ -0,0 +1,155 @@
+package org.jenkinsci.extension_indexer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Where the time went while processing one module, phase by phase.
+ * <p>
+ * Besides the wall time, each phase records the bytes it transferred over the network, the bytes the thread
+ * running it allocated, and the number of classes it dealt with, wherever these apply.
+ * Each run of a phase is also a {@link PhaseEvent} for Flight Recorder.
+ *
+ * @see ProfileReport
+ */
+final class Profile {
+    enum Phase {
+        UPDATE_CENTER,
+        SOURCES_DOWNLOAD,
+        /**
+         * Opening the sources jar.
+         */
+        UNZIP,
+        POM_FETCH,
+        RESOLVE,
+        /**
+         * Parsing the sources, with the number of compilation units.
+         */
+        PARSE,
+        /**
+         * Entering the parsed classes, and attributing them in full with {@code -fullAnalysis}.
+         */
+        ANALYZE,
+        /**
+         * Looking for classes of interest and summarizing them, with the number found.
+         */
+        SCAN,
+        /**
+         * Recording the summaries of a module, and storing them in the cache and the journal.
+         */
+        SUMMARIZE,
+        JSON_OUTPUT,
+        ASCIIDOC_OUTPUT
+    }
+
+    /**
+     * What one phase used. Repeated runs of the same phase add up.
+     */
+    static final class Usage {
+        long wallNanos;
+        long bytesTransferred;
+        long bytesAllocated;
+        int classes;
+
+        private Usage copy() {
+            Usage u = new Usage();
+            u.wallNanos = wallNanos;
+            u.bytesTransferred = bytesTransferred;
+            u.bytesAllocated = bytesAllocated;
+            u.classes = classes;
+            return u;
+        }
+    }
+
+    /**
+     * GAV of the module, or null for the work that isn't specific to a module.
+     */
+    private final String gav;
+    private final Map<Phase,Usage> phases = new EnumMap<>(Phase.class);
+
+    Profile(String gav) {
+        this.gav = gav;
+    }
+
+    /**
+     * Starts timing the given phase on the current thread, until the returned timer is closed on the same thread.
+     */
+    Timer start(Phase phase) {
+        return new Timer(phase);
+    }
+
+    /**
+     * Returns what the phases run so far used.
+     */
+    synchronized Map<Phase,Usage> getPhases() {
+        Map<Phase,Usage> r = new EnumMap<>(Phase.class);
+        phases.forEach((p, u) -> r.put(p, u.copy()));
+        return r;
+    }
+
+    private synchronized void record(Phase phase, long wallNanos, long bytesTransferred, long bytesAllocated, int classes) {
+        Usage u = phases.computeIfAbsent(phase, unused -> new Usage());
+        u.wallNanos += wallNanos;
+        u.bytesTransferred += bytesTransferred;
+        u.bytesAllocated += bytesAllocated;
+        u.classes += classes;
+    }
+
+    final class Timer implements AutoCloseable {
+        private final Phase phase;
+        private final PhaseEvent event = new PhaseEvent();
+        private final long start = System.nanoTime();
+        private final long allocatedAtStart = getAllocatedBytes();
+        private long size;
+        private long bytesTransferred;
+        private int classes;
+
+        private Timer(Phase phase) {
+            this.phase = phase;
+            event.begin();
+        }
+
+        /**
+         * Sets the size of the input the phase works on, for {@link PhaseEvent}.
+         */
+        void setSize(long size) {
+            this.size = size;
+        }
+
+        void addBytesTransferred(long n) {
+            bytesTransferred += n;
+        }
+
+        void addClasses(int n) {
+            classes += n;
+        }
+
+        @Override
+        public void close() {
+            record(phase, System.nanoTime() - start, bytesTransferred, getAllocatedBytes() - allocatedAtStart, classes);
+            event.end();
+            if (event.shouldCommit()) {
+                event.module = gav;
+                event.phase = phase.name();
+                event.size = size;
+                event.bytesTransferred = bytesTransferred;
+                event.classes = classes;
+                event.commit();
+            }
+        }
+    }
+
+    private static long getAllocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getCurrentThreadAllocatedBytes();
+            }
+        }
+        return 0;
+    }
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+}
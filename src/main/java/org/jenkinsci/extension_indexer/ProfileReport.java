@@ -0,0 +1,127 @@
+package org.jenkinsci.extension_indexer;
+
+import org.jenkinsci.extension_indexer.Profile.Phase;
+import org.jenkinsci.extension_indexer.Profile.Usage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the {@link Profile}s of a run out as JSON, or as CSV if the file name ends with ".csv".
+ * <p>
+ * The JSON lists the phases of every module as well as the slowest modules of each phase.
+ * The CSV has one row per module and phase, and the slowest modules are only printed.
+ */
+final class ProfileReport {
+    /**
+     * Profile of each module, keyed by its GAV. The work that isn't specific to a module,
+     * like reading the update center and writing the output, is listed under {@link #RUN}.
+     */
+    private final Map<String,Map<Phase,Usage>> profiles = new LinkedHashMap<>();
+    /**
+     * Modules by phase, slowest first.
+     */
+    private final Map<Phase,List<String>> slowest = new EnumMap<>(Phase.class);
+
+    ProfileReport(Profile run, Collection<Module> modules, int top) {
+        profiles.put(RUN, run.getPhases());
+        for (Module m : modules) {
+            profiles.put(m.gav, m.profile.getPhases());
+        }
+
+        for (Phase p : Phase.values()) {
+            List<String> gavs = new ArrayList<>();
+            for (Map.Entry<String,Map<Phase,Usage>> e : profiles.entrySet()) {
+                if (e.getValue().containsKey(p) && !e.getKey().equals(RUN)) {
+                    gavs.add(e.getKey());
+                }
+            }
+            if (gavs.isEmpty()) {
+                continue;
+            }
+            gavs.sort(Comparator.comparingLong((String gav) -> profiles.get(gav).get(p).wallNanos).reversed());
+            slowest.put(p, new ArrayList<>(gavs.subList(0, Math.min(top, gavs.size()))));
+        }
+    }
+
+    void write(File file) throws IOException {
+        if (file.getName().endsWith(".csv")) {
+            writeCsv(file);
+            printSlowest();
+        } else {
+            writeJson(file);
+        }
+    }
+
+    private void writeJson(File file) throws IOException {
+        try (JsonWriter w = new JsonWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8), 2)) {
+            w.beginObject(2);
+
+            w.name("modules").beginObject(profiles.size());
+            for (Map.Entry<String,Map<Phase,Usage>> e : profiles.entrySet()) {
+                w.name(e.getKey()).beginObject(e.getValue().size());
+                for (Map.Entry<Phase,Usage> p : e.getValue().entrySet()) {
+                    Usage u = p.getValue();
+                    w.name(p.getKey().name()).beginObject(4)
+                            .name("wallMillis").value(TimeUnit.NANOSECONDS.toMillis(u.wallNanos))
+                            .name("bytesTransferred").value(u.bytesTransferred)
+                            .name("bytesAllocated").value(u.bytesAllocated)
+                            .name("classes").value(u.classes)
+                            .end();
+                }
+                w.end();
+            }
+            w.end();
+
+            w.name("slowest").beginObject(slowest.size());
+            for (Map.Entry<Phase,List<String>> e : slowest.entrySet()) {
+                w.name(e.getKey().name()).beginArray(e.getValue().size());
+                for (String gav : e.getValue()) {
+                    w.beginObject(2)
+                            .name("gav").value(gav)
+                            .name("wallMillis").value(TimeUnit.NANOSECONDS.toMillis(profiles.get(gav).get(e.getKey()).wallNanos))
+                            .end();
+                }
+                w.end();
+            }
+            w.end();
+
+            w.end();
+        }
+    }
+
+    private void writeCsv(File file) throws IOException {
+        try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            w.println("gav,phase,wallMillis,bytesTransferred,bytesAllocated,classes");
+            for (Map.Entry<String,Map<Phase,Usage>> e : profiles.entrySet()) {
+                for (Map.Entry<Phase,Usage> p : e.getValue().entrySet()) {
+                    Usage u = p.getValue();
+                    w.println(e.getKey() + "," + p.getKey() + "," + TimeUnit.NANOSECONDS.toMillis(u.wallNanos) + ","
+                            + u.bytesTransferred + "," + u.bytesAllocated + "," + u.classes);
+                }
+            }
+        }
+    }
+
+    private void printSlowest() {
+        for (Map.Entry<Phase,List<String>> e : slowest.entrySet()) {
+            System.out.println("Slowest in " + e.getKey() + ":");
+            for (String gav : e.getValue()) {
+                System.out.println("  " + gav + ": " + TimeUnit.NANOSECONDS.toMillis(profiles.get(gav).get(e.getKey()).wallNanos) + "ms");
+            }
+        }
+    }
+
+    private static final String RUN = "(run)";
+}
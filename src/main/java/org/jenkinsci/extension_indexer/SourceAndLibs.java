@@ -1,64 +1,117 @@
 package org.jenkinsci.extension_indexer;
 
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 
-import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.UnsupportedEncodingException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Enumeration;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
-import java.util.Base64;
-import java.net.URL;
-import java.net.URLConnection;
-import java.net.MalformedURLException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
- * Extracted source files and dependency jar files for a Maven project.
+ * Source files and dependency jar files for a Maven project.
  *
  * @author Kohsuke Kawaguchi
  */
 public class SourceAndLibs implements Closeable {
-    public final File srcDir;
-    public final File libDir;
+    /**
+     * Root of the source tree. Either a directory, or the root of a sources jar opened as a {@link FileSystem}.
+     */
+    public final Path srcRoot;
+    private List<File> classPath;
 
     /**
-     * Lazily built list of all views in classpath.
+     * Sources jar that {@link #srcRoot} belongs to, and the temporary directory it was downloaded to,
+     * if this was {@linkplain #fetch(Module) fetched}.
      */
-    private List<String> allViews;
+    private final FileSystem sources;
+    private final File workDir;
+    private final long sourcesSize;
+
+    /**
+     * Lazily built index of views in source files, keyed by the directory, such as 'foo/bar'.
+     */
+    private Map<String,List<String>> srcViews;
+
+    /**
+     * Lazily built list of view catalogs of the jars in classpath.
+     */
+    private List<ViewCatalog> catalogs;
 
     public SourceAndLibs(File srcDir, File libDir) {
-        this.srcDir = srcDir;
-        this.libDir = libDir;
+        this(srcDir.toPath(), FileUtilsExt.getFileIterator(libDir, "jar"));
+    }
+
+    public SourceAndLibs(Path srcRoot, List<File> classPath) {
+        this.srcRoot = srcRoot;
+        this.classPath = classPath;
+        this.sources = null;
+        this.workDir = null;
+        this.sourcesSize = 0;
+    }
+
+    private SourceAndLibs(FileSystem sources, File workDir, long sourcesSize) {
+        this.srcRoot = sources.getPath("/");
+        this.classPath = Collections.emptyList();
+        this.sources = sources;
+        this.workDir = workDir;
+        this.sourcesSize = sourcesSize;
     }
 
     /**
      * Frees any resources allocated for this.
-     * In particular, delete the files if they are temporarily extracted.
+     * In particular, delete the files if they are temporarily downloaded.
      */
     @Override
     public void close() throws IOException {
+        try {
+            if (sources != null) {
+                sources.close();
+            }
+        } finally {
+            if (workDir != null) {
+                FileUtils.deleteDirectory(workDir);
+            }
+        }
     }
 
     public List<File> getClassPath() {
-        return FileUtilsExt.getFileIterator(libDir, "jar");
+        return Collections.unmodifiableList(classPath);
+    }
+
+    /**
+     * Size of the sources jar this was {@linkplain #fetch(Module) fetched} from, or 0 if not applicable.
+     */
+    public long getSourcesSize() {
+        return sourcesSize;
+    }
+
+    /**
+     * Total size of the jars in the classpath.
+     */
+    public long getClassPathSize() {
+        long size = 0;
+        for (File jar : classPath) {
+            size += jar.length();
+        }
+        return size;
     }
 
-    public List<File> getSourceFiles() {
-        return FileUtilsExt.getFileIterator(srcDir, "java");
+    public List<Path> getSourceFiles() throws IOException {
+        try (Stream<Path> s = Files.walk(srcRoot)) {
+            return s.filter(p -> p.toString().endsWith(".java") && Files.isRegularFile(p)).collect(Collectors.toList());
+        }
     }
 
     /**
@@ -75,141 +128,112 @@ public class SourceAndLibs implements Closeable {
         pkg = pkg.replace('.', '/');
 
         // views in source files
-        File[] srcViews = new File(srcDir,pkg).listFiles();
-        if (srcViews!=null) {
-            for (File f : srcViews) {
-                if (VIEW_EXTENSIONS.contains(FilenameUtils.getExtension(f.getPath()))) {
-                    views.add(f.getName());
-                }
+        if (srcViews==null) {
+            srcViews = new HashMap<>();
+            try (Stream<Path> s = Files.walk(srcRoot)) {
+                s.forEach(p -> {
+                    String name = p.getFileName() != null ? p.getFileName().toString() : "";
+                    if (VIEW_EXTENSIONS.contains(FilenameUtils.getExtension(name))) {
+                        srcViews.computeIfAbsent(getDirectoryName(p), unused -> new ArrayList<>()).add(name);
+                    }
+                });
+            } catch (IOException x) {
+                System.err.println("Failed to list "+srcRoot);
+                x.printStackTrace();
             }
         }
+        views.addAll(srcViews.getOrDefault(pkg, Collections.emptyList()));
 
         // views from dependencies
-        if (allViews==null) {
-            allViews = new ArrayList<>();
+        if (catalogs==null) {
+            catalogs = new ArrayList<>();
             for (File jar : getClassPath()) {
-                try (JarFile jf = new JarFile(jar)) {
-                    Enumeration<JarEntry> e = jf.entries();
-                    while (e.hasMoreElements()) {
-                        JarEntry je = e.nextElement();
-                        String n = je.getName();
-                        if (VIEW_EXTENSIONS.contains(FilenameUtils.getExtension(n))) {
-                            allViews.add(n);
-                        }
-                    }
+                try {
+                    catalogs.add(ViewCatalog.of(jar));
                 } catch (IOException x) {
                     System.err.println("Failed to open "+jar);
                     x.printStackTrace();
                 }
             }
         }
-
-        // 'foo/bar/zot.jelly' is a view but 'foo/bar/xxx/yyy.jelly' is NOT a view for 'foo/bar'
-        String prefix = pkg+'/';
-        for (String v : allViews) {
-            if (v.startsWith(prefix)) {
-                String rest = v.substring(prefix.length());
-                if (!rest.contains("/"))
-                    views.add(v);
-            }
+        for (ViewCatalog c : catalogs) {
+            views.addAll(c.getViews(pkg));
         }
 
         return views;
     }
 
-    private static byte[] auth;
-
-    // Retrieve the auth from the artifact caching proxy Maven settings file
-    private static byte[] getAuth() {
-        if (auth == null && System.getenv("ARTIFACT_CACHING_PROXY_USERNAME") != null && System.getenv("ARTIFACT_CACHING_PROXY_PASSWORD") != null) {
-            try {
-                auth = Base64.getEncoder().encode((System.getenv("ARTIFACT_CACHING_PROXY_USERNAME") + ':' + System.getenv("ARTIFACT_CACHING_PROXY_PASSWORD")).getBytes("UTF-8"));
-            } catch(UnsupportedEncodingException uee) {
-                uee.printStackTrace();
+    /**
+     * Returns the directory that contains the given file relative to {@link #srcRoot}, using '/' as the separator
+     * regardless of the file system.
+     */
+    private String getDirectoryName(Path p) {
+        List<String> names = new ArrayList<>();
+        for (Path n : srcRoot.relativize(p.getParent())) {
+            if (!n.toString().isEmpty()) {
+                names.add(n.toString());
             }
         }
-        return auth;
+        return String.join("/", names);
     }
 
-    private static URLConnection getURLConnection(URL url) throws MalformedURLException, IOException {
-        String urlString = url.toString();
-        URLConnection conn = new URL(urlString).openConnection();
-        // If we're querying one of the artifact caching proxies we need to add authentication
-        if (!urlString.startsWith("https://repo.jenkins-ci.org")) {
-            conn.setRequestProperty("Accept-Charset", "UTF-8");
-            conn.setRequestProperty("Accept-Encoding", "identity");
-            conn.setRequestProperty("User-Agent", "backend-extension-indexer/0.1");
-            conn.setRequestProperty("Authorization", "Basic " + new String(getAuth(), "UTF-8"));
+    public static SourceAndLibs create(Module module, Module.CoreModule core, DependencyResolver resolver) throws IOException, InterruptedException {
+        SourceAndLibs sal = fetch(module);
+        try {
+            sal.resolveDependencies(module, core, resolver);
+            return sal;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            sal.close();
+            throw e;
         }
-        return conn;
     }
 
-    public static SourceAndLibs create(Module module, Module.CoreModule core) throws IOException, InterruptedException {
+    /**
+     * Downloads the sources and the POM of the given module, but doesn't resolve its dependencies yet.
+     *
+     * @see #resolveDependencies(Module, Module.CoreModule, DependencyResolver)
+     */
+    public static SourceAndLibs fetch(Module module) throws IOException, InterruptedException {
         final File tempDir = Files.createTempDirectory("jenkins-extPoint").toFile();
-        File srcdir = new File(tempDir,"src");
-        File libdir = new File(tempDir,"lib");
-
-        System.out.println("Fetching " + module.getSourcesUrl());
+        FileSystem sources = null;
+        try {
+            System.out.println("Fetching " + module.getSourcesUrl());
 
-        File sourcesJar = File.createTempFile("extension-indexer-" + module.artifactId, "-sources.jar");
-        try (InputStream is = getURLConnection(module.getSourcesUrl()).getInputStream(); OutputStream os = Files.newOutputStream(sourcesJar.toPath())) {
-            IOUtils.copy(is, os);
-        }
-        FileUtilsExt.unzip(sourcesJar, srcdir);
-
-        System.out.println("Fetching " + module.getResolvedPomUrl());
-        try (InputStream is = getURLConnection(module.getResolvedPomUrl()).getInputStream(); OutputStream os = Files.newOutputStream(new File(srcdir, "pom.xml").toPath())) {
-            IOUtils.copy(is, os);
-        }
+            File sourcesJar = new File(tempDir, module.artifactId + "-sources.jar");
+            try (Profile.Timer t = module.profile.start(Profile.Phase.SOURCES_DOWNLOAD)) {
+                t.addBytesTransferred(Downloader.download(module.getSourcesUrl(), sourcesJar.toPath(), false));
+            }
+            // compile straight out of the jar, instead of extracting thousands of small files only to delete them again
+            try (Profile.Timer t = module.profile.start(Profile.Phase.UNZIP)) {
+                t.setSize(sourcesJar.length());
+                sources = FileSystems.newFileSystem(sourcesJar.toPath());
+            }
 
-        System.out.println("Downloading Dependencies");
-        downloadDependencies(srcdir, libdir, core);
+            System.out.println("Fetching " + module.getResolvedPomUrl());
+            try (Profile.Timer t = module.profile.start(Profile.Phase.POM_FETCH)) {
+                t.addBytesTransferred(Downloader.download(module.getResolvedPomUrl(), new File(tempDir, "pom.xml").toPath(), true));
+            }
 
-        return new SourceAndLibs(srcdir, libdir) {
-            @Override
-            public void close() throws IOException {
-                FileUtils.deleteDirectory(tempDir);
+            return new SourceAndLibs(sources, tempDir, sourcesJar.length());
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            if (sources != null) {
+                sources.close();
             }
-        };
+            FileUtils.deleteDirectory(tempDir);
+            throw e;
+        }
     }
 
-    @SuppressFBWarnings(value = "COMMAND_INJECTION", justification = "Command injection is not a viable risk here")
-    private static void downloadDependencies(File pomDir, File destDir, Module.CoreModule core) throws IOException, InterruptedException {
-        Files.createDirectories(destDir.toPath());
-        String process = "mvn";
-        if (System.getenv("M2_HOME") != null) {
-            process = System.getenv("M2_HOME") + "/bin/mvn";
-        }
-        List<String> command = new ArrayList<>();
-        command.add(process);
-        command.addAll(Arrays.asList("--settings", (System.getenv("MAVEN_SETTINGS") != null) ? System.getenv("MAVEN_SETTINGS") : new File("maven-settings.xml").getAbsolutePath()));
-
-        command.addAll(Arrays.asList("--update-snapshots",
-                "--batch-mode",
-                "org.apache.maven.plugins:maven-dependency-plugin:3.8.0:copy-dependencies",
-                "org.apache.maven.plugins:maven-dependency-plugin:3.8.0:copy",
-                "-Dartifact=" + core.gav,
-                "-DincludeScope=compile",
-                "-DoutputDirectory=" + destDir.getAbsolutePath()));
-
-        ProcessBuilder builder = new ProcessBuilder(command);
-        builder.environment().put("JAVA_HOME",System.getProperty("java.home"));
-        builder.directory(pomDir);
-        builder.redirectErrorStream(true);
-        Process proc = builder.start();
-
-        // capture the output, but only report it in case of an error
-        ByteArrayOutputStream output = new ByteArrayOutputStream();
-        proc.getOutputStream().close();
-        IOUtils.copy(proc.getInputStream(), output);
-        proc.getErrorStream().close();
-        proc.getInputStream().close();
-
-        int result = proc.waitFor();
-        if (result != 0) {
-            System.out.write(output.toByteArray());
-            throw new IOException("Maven didn't like this (exit code=" + result + ")! " + pomDir.getAbsolutePath());
+    /**
+     * Resolves the classpath of the module {@linkplain #fetch(Module) fetched} into this.
+     */
+    public void resolveDependencies(Module module, Module.CoreModule core, DependencyResolver resolver) throws IOException, InterruptedException {
+        System.out.println("Downloading Dependencies");
+        try (Profile.Timer t = module.profile.start(Profile.Phase.RESOLVE)) {
+            classPath = resolver.resolve(module, core, workDir);
+            t.setSize(getClassPathSize());
         }
+        catalogs = null;
     }
 
     private static final Set<String> VIEW_EXTENSIONS = Set.of("jelly", "groovy");
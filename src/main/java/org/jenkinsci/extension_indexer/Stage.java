@@ -0,0 +1,111 @@
+package org.jenkinsci.extension_indexer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One step of the pipeline that {@link ExtensionPointListGenerator} runs modules through.
+ * <p>
+ * Each stage has its own threads, sized for the resource it is bound by, and only lets a bounded number of
+ * jobs wait for them. Submitting to a full stage blocks, so a slow stage holds back the ones feeding it
+ * instead of piling up downloaded sources or compiler state in memory.
+ * <p>
+ * Waiting jobs are run in the order of their priority, and in the order they were submitted among equals.
+ */
+final class Stage {
+    private final String name;
+    private final ExecutorService executor;
+    /**
+     * Jobs that may be running or waiting in this stage at the same time.
+     */
+    private final Semaphore capacity;
+    private final AtomicLong submitted = new AtomicLong();
+
+    /**
+     * @param threads
+     *      Number of jobs that run at the same time.
+     * @param queueSize
+     *      Number of jobs that may wait for a thread before {@link #submit(Runnable)} blocks.
+     */
+    Stage(String name, int threads, int queueSize) {
+        this.name = name;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, name + " #" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.capacity = new Semaphore(threads + queueSize);
+    }
+
+    /**
+     * Runs the given job in this stage, waiting for room if the stage is full.
+     */
+    void submit(Runnable job) throws InterruptedException {
+        submit(job, 0);
+    }
+
+    /**
+     * Runs the given job in this stage ahead of the waiting jobs of lower priority, waiting for room if the stage is full.
+     */
+    void submit(Runnable job, long priority) throws InterruptedException {
+        capacity.acquire();
+        try {
+            executor.execute(new Task(job, priority, submitted.getAndIncrement()));
+        } catch (RejectedExecutionException e) {
+            capacity.release();
+            throw e;
+        }
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Drops the waiting jobs and interrupts the running ones. Submitting to the stage fails from then on,
+     * rather than blocking.
+     */
+    void abort() {
+        // the dropped jobs never give back their room, so a blocked submit would wait forever
+        capacity.release(executor.shutdownNow().size());
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private final class Task implements Runnable, Comparable<Task> {
+        private final Runnable job;
+        private final long priority;
+        private final long sequence;
+
+        Task(Runnable job, long priority, long sequence) {
+            this.job = job;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            try {
+                job.run();
+            } finally {
+                capacity.release();
+            }
+        }
+
+        @Override
+        public int compareTo(Task that) {
+            int r = Long.compare(that.priority, this.priority);
+            return r != 0 ? r : Long.compare(this.sequence, that.sequence);
+        }
+    }
+}
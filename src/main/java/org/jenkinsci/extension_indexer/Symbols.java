@@ -0,0 +1,25 @@
+package org.jenkinsci.extension_indexer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Symbol table for the strings that repeat across thousands of summaries, such as package names,
+ * extension point class names and view names, so that each is kept in memory only once.
+ */
+final class Symbols {
+    private static final ConcurrentMap<String,String> SYMBOLS = new ConcurrentHashMap<>();
+
+    private Symbols() {}
+
+    /**
+     * Returns the canonical instance of the given string, or null for null.
+     */
+    static String intern(String s) {
+        if (s == null) {
+            return null;
+        }
+        String existing = SYMBOLS.putIfAbsent(s, s);
+        return existing != null ? existing : s;
+    }
+}
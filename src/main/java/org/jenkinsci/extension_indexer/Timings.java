@@ -0,0 +1,126 @@
+package org.jenkinsci.extension_indexer;
+
+import net.sf.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long plugins took to process in earlier runs, so that the ones expected to take longest can be started first.
+ * <p>
+ * Timings are kept by artifact ID rather than GAV, since most plugins have a new release by the next run and
+ * take about as long as before. Plugins without a history are estimated from their size, at the rate
+ * that the plugins with a history went.
+ */
+final class Timings {
+    private final File file;
+    private final Map<String,Timing> timings = new ConcurrentHashMap<>();
+    /**
+     * Milliseconds per byte of plugin archive, and of sources jar, over all the plugins with a history.
+     */
+    private final double millisPerByte, millisPerSourcesByte;
+
+    /**
+     * Loads the timings of earlier runs from the given file, if there is one.
+     *
+     * @param file
+     *      File to keep the timings in, or null to only estimate by size.
+     */
+    Timings(File file) {
+        this.file = file;
+        if (file != null && file.exists()) {
+            try {
+                JSONObject o = JSONObject.fromObject(Files.readString(file.toPath(), StandardCharsets.UTF_8));
+                for (Object k : o.keySet()) {
+                    JSONObject t = o.getJSONObject((String) k);
+                    timings.put((String) k, new Timing(t.getLong("millis"), t.getLong("size"), t.getLong("sourcesSize")));
+                }
+            } catch (IOException | RuntimeException e) {
+                // without a history, plugins are just scheduled by size
+                System.err.println("Failed to read timings of earlier runs from " + file);
+                e.printStackTrace();
+            }
+        }
+
+        long millis = 0, size = 0, sourcesSize = 0;
+        for (Timing t : timings.values()) {
+            millis += t.millis;
+            size += t.size;
+            sourcesSize += t.sourcesSize;
+        }
+        this.millisPerByte = size > 0 ? (double) millis / size : DEFAULT_MILLIS_PER_BYTE;
+        this.millisPerSourcesByte = sourcesSize > 0 ? (double) millis / sourcesSize : DEFAULT_MILLIS_PER_BYTE;
+    }
+
+    /**
+     * Estimates how many milliseconds the given plugin takes, before its sources are downloaded.
+     */
+    long estimate(UpdateCenterReader.Plugin p) {
+        Timing t = timings.get(p.name);
+        return t != null ? t.millis : (long) (p.size * millisPerByte);
+    }
+
+    /**
+     * Estimates how many milliseconds the given plugin takes, once the size of its sources is known.
+     */
+    long estimate(UpdateCenterReader.Plugin p, long sourcesSize) {
+        Timing t = timings.get(p.name);
+        return t != null ? t.millis : (long) (sourcesSize * millisPerSourcesByte);
+    }
+
+    /**
+     * Records how long the given plugin took this time, according to its {@link Profile}.
+     */
+    void record(UpdateCenterReader.Plugin p, Module m, long sourcesSize) {
+        long nanos = 0;
+        for (Profile.Usage u : m.profile.getPhases().values()) {
+            nanos += u.wallNanos;
+        }
+        timings.put(p.name, new Timing(TimeUnit.NANOSECONDS.toMillis(nanos), p.size, sourcesSize));
+    }
+
+    void save() throws IOException {
+        if (file == null) {
+            return;
+        }
+        JSONObject o = new JSONObject();
+        for (Map.Entry<String,Timing> e : timings.entrySet()) {
+            JSONObject t = new JSONObject();
+            t.put("millis", e.getValue().millis);
+            t.put("size", e.getValue().size);
+            t.put("sourcesSize", e.getValue().sourcesSize);
+            o.put(e.getKey(), t);
+        }
+
+        Path f = file.toPath();
+        Files.createDirectories(f.getParent());
+        // write and rename, like ExtractionCache does
+        Path tmp = Files.createTempFile(f.getParent(), f.getFileName().toString(), ".tmp");
+        Files.writeString(tmp, o.toString(), StandardCharsets.UTF_8);
+        Files.move(tmp, f, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static final class Timing {
+        final long millis;
+        final long size;
+        final long sourcesSize;
+
+        Timing(long millis, long size, long sourcesSize) {
+            this.millis = millis;
+            this.size = size;
+            this.sourcesSize = sourcesSize;
+        }
+    }
+
+    /**
+     * Only the order of the estimates matters as long as there's no history, so any rate will do.
+     */
+    private static final double DEFAULT_MILLIS_PER_BYTE = 0.001;
+}
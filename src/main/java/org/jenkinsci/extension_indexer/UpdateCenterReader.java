@@ -0,0 +1,186 @@
+package org.jenkinsci.extension_indexer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Pulls the core version and the plugins out of the update center JSON one at a time,
+ * without building a tree of the whole document.
+ * <p>
+ * Only the handful of fields the indexer needs are kept; everything else, such as dependencies,
+ * labels and the signature, is skipped over by the parser.
+ */
+final class UpdateCenterReader implements Closeable {
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final JsonParser parser;
+    private String coreVersion;
+    /**
+     * Plugins read while looking for the core version, in case "plugins" comes before "core".
+     */
+    private final Deque<Plugin> buffered = new ArrayDeque<>();
+    /**
+     * True while the parser is inside the "plugins" object.
+     */
+    private boolean inPlugins;
+    /**
+     * True once the parser reached the end of the document.
+     */
+    private boolean done;
+
+    UpdateCenterReader(InputStream in) throws IOException {
+        this.parser = FACTORY.createParser(in);
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Update center JSON is not an object");
+        }
+    }
+
+    /**
+     * Returns the version of Jenkins core the update center is for.
+     */
+    String getCoreVersion() throws IOException {
+        while (coreVersion == null) {
+            if (inPlugins) {
+                Plugin p = readPlugin();
+                if (p != null) {
+                    buffered.add(p);
+                }
+            } else if (done) {
+                throw new IOException("No core version in update center JSON");
+            } else {
+                advance();
+            }
+        }
+        return coreVersion;
+    }
+
+    /**
+     * Returns the next plugin, or null if there are no more.
+     */
+    Plugin next() throws IOException {
+        if (!buffered.isEmpty()) {
+            return buffered.poll();
+        }
+        while (!done) {
+            if (inPlugins) {
+                Plugin p = readPlugin();
+                if (p != null) {
+                    return p;
+                }
+            } else {
+                advance();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the next top level property, stopping right inside "plugins".
+     */
+    private void advance() throws IOException {
+        JsonToken t = parser.nextToken();
+        if (t == JsonToken.END_OBJECT || t == null) {
+            done = true;
+            return;
+        }
+        String name = parser.currentName();
+        t = parser.nextToken();
+        if (name.equals("core") && t == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                if (parser.nextToken() == JsonToken.VALUE_STRING && field.equals("version")) {
+                    coreVersion = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } else if (name.equals("plugins") && t == JsonToken.START_OBJECT) {
+            inPlugins = true;
+        } else {
+            parser.skipChildren();
+        }
+    }
+
+    /**
+     * Reads the next entry of "plugins", or returns null after its last one.
+     */
+    private Plugin readPlugin() throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.currentName();
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+
+            String name = key, gav = null, url = null, title = null, scm = "";
+            long size = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken t = parser.nextToken();
+                if (t == JsonToken.VALUE_NUMBER_INT && field.equals("size")) {
+                    size = parser.getLongValue();
+                    continue;
+                }
+                if (t != JsonToken.VALUE_STRING) {
+                    parser.skipChildren();
+                    continue;
+                }
+                switch (field) {
+                case "name":    name = parser.getText(); break;
+                case "gav":     gav = parser.getText(); break;
+                case "url":     url = parser.getText(); break;
+                case "title":   title = parser.getText(); break;
+                case "scm":     scm = parser.getText(); break;
+                default:        break;
+                }
+            }
+
+            if (gav == null || url == null) {
+                System.err.println("Skipping " + name + ", which has no gav or url in the update center");
+                continue;
+            }
+            return new Plugin(name, gav, url, title != null ? title : name, scm, size);
+        }
+        inPlugins = false;
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    /**
+     * What the update center says about a plugin.
+     */
+    static final class Plugin {
+        final String name;
+        final String gav;
+        final String url;
+        final String title;
+        /**
+         * URL of the source repository, or "" if unknown.
+         */
+        final String scm;
+        /**
+         * Size of the plugin archive in bytes, or 0 if unknown.
+         */
+        final long size;
+
+        Plugin(String name, String gav, String url, String title, String scm, long size) {
+            this.name = name;
+            this.gav = gav;
+            this.url = url;
+            this.title = title;
+            this.scm = scm;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.jenkinsci.extension_indexer;
+
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Views in a dependency jar, indexed by the package they belong to.
+ * <p>
+ * jenkins-core and the common libraries are on the classpath of every plugin, so catalogs are built once
+ * per jar and shared by all the modules being processed concurrently. Jars are told apart by the checksum
+ * of their contents.
+ *
+ * @see SourceAndLibs#getViewFiles(String)
+ */
+final class ViewCatalog {
+    /**
+     * All the catalogs built so far, keyed by the checksum of the jar.
+     */
+    private static final ConcurrentMap<String,ViewCatalog> CATALOGS = new ConcurrentHashMap<>();
+    /**
+     * Checksums of the jars seen so far, keyed by path, size and timestamp, so that each jar is only read once.
+     */
+    private static final ConcurrentMap<String,String> CHECKSUMS = new ConcurrentHashMap<>();
+
+    /**
+     * View files in the qualified form, such as 'foo/bar/abc.groovy', keyed by the directory, such as 'foo/bar'.
+     */
+    private final Map<String,List<String>> views = new HashMap<>();
+
+    private ViewCatalog(File jar) throws IOException {
+        try (JarFile jf = new JarFile(jar)) {
+            Enumeration<JarEntry> e = jf.entries();
+            while (e.hasMoreElements()) {
+                String n = e.nextElement().getName();
+                if (VIEW_EXTENSIONS.contains(FilenameUtils.getExtension(n))) {
+                    int i = n.lastIndexOf('/');
+                    views.computeIfAbsent(i < 0 ? "" : n.substring(0, i), unused -> new ArrayList<>()).add(n);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the views directly in the given directory, such as 'foo/bar'.
+     * 'foo/bar/zot.jelly' is a view for 'foo/bar' but 'foo/bar/xxx/yyy.jelly' is not.
+     */
+    List<String> getViews(String dir) {
+        return Collections.unmodifiableList(views.getOrDefault(dir, Collections.emptyList()));
+    }
+
+    /**
+     * Returns the catalog of the given jar, building it if no jar with the same contents has been seen before.
+     */
+    static ViewCatalog of(File jar) throws IOException {
+        String checksum = getChecksum(jar);
+        ViewCatalog c = CATALOGS.get(checksum);
+        if (c == null) {
+            c = new ViewCatalog(jar);
+            ViewCatalog existing = CATALOGS.putIfAbsent(checksum, c);
+            if (existing != null) {
+                c = existing;
+            }
+        }
+        return c;
+    }
+
+    private static String getChecksum(File jar) throws IOException {
+        String key = jar.getAbsolutePath() + ':' + jar.length() + ':' + jar.lastModified();
+        String checksum = CHECKSUMS.get(key);
+        if (checksum == null) {
+            try (DigestInputStream in = new DigestInputStream(Files.newInputStream(jar.toPath()), MessageDigest.getInstance("SHA-256"))) {
+                in.transferTo(OutputStream.nullOutputStream());
+                checksum = HexFormat.of().formatHex(in.getMessageDigest().digest());
+            } catch (NoSuchAlgorithmException e) {
+                throw new AssertionError(e); // every JVM has SHA-256
+            }
+            CHECKSUMS.put(key, checksum);
+        }
+        return checksum;
+    }
+
+    private static final Set<String> VIEW_EXTENSIONS = Set.of("jelly", "groovy");
+}
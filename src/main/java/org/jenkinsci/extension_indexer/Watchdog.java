@@ -0,0 +1,71 @@
+package org.jenkinsci.extension_indexer;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gives up on work that takes longer than it should, so that a plugin that hangs doesn't hold up the whole run.
+ * <p>
+ * When a {@link Deadline} passes, the thread that started it is interrupted. Downloads and forked Maven processes
+ * stop on that, and so does javac, see {@link ExtensionPointsExtractor}. Work that doesn't notice keeps its thread,
+ * but the callback lets the caller move on without it.
+ */
+final class Watchdog {
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Starts a deadline for the work the current thread is about to do, until the returned deadline is closed
+     * on the same thread.
+     *
+     * @param timeout
+     *      Seconds the work may take, or 0 for no limit.
+     * @param onTimeout
+     *      Called on the watchdog thread after interrupting the thread, if the deadline passes.
+     */
+    Deadline start(int timeout, Runnable onTimeout) {
+        Deadline d = new Deadline(onTimeout);
+        if (timeout > 0) {
+            d.future = timer.schedule(d::expire, timeout, TimeUnit.SECONDS);
+        }
+        return d;
+    }
+
+    void shutdown() {
+        timer.shutdownNow();
+    }
+
+    static final class Deadline implements AutoCloseable {
+        private final Thread thread = Thread.currentThread();
+        private final Runnable onTimeout;
+        private ScheduledFuture<?> future;
+        private boolean closed;
+
+        private Deadline(Runnable onTimeout) {
+            this.onTimeout = onTimeout;
+        }
+
+        private synchronized void expire() {
+            if (closed) {
+                return;
+            }
+            thread.interrupt();
+            onTimeout.run();
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+            // the deadline may have passed just as the work completed, don't let that interrupt what comes next
+            Thread.interrupted();
+        }
+    }
+}
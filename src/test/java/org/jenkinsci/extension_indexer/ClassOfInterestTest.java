@@ -0,0 +1,59 @@
+package org.jenkinsci.extension_indexer;
+
+import org.jsoup.Jsoup;
+import org.jsoup.safety.Safelist;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * {@link ClassOfInterest#clean(String)} skips Jsoup for plain text, but has to publish exactly what Jsoup would.
+ */
+class ClassOfInterestTest {
+    @Test
+    void cleanMatchesJsoup() {
+        for (String s : List.of(
+                "",
+                " ",
+                "+++Does a thing.+++ ",
+                "+++ +++ ",
+                "+++Uses \"quotes\" and 'apostrophes'.+++ ",
+                "+++Doubled  spaces   inside.+++   +++and between.+++ ",
+                "   +++leading and trailing+++   ",
+                "+++See +++ jenkinsdoc:hudson.model.Job[] +++.+++ ",
+                "+++Tabs\tand\rcarriage returns.+++ ",
+                "+++Markup <b>bold</b> &amp; <i>italic</i>.+++ ",
+                "+++Comparisons like a < b > c.+++ ",
+                "+++Not\u00A0breaking, \u00FCn\u00EFcode and \u200Bzero width.+++ ")) {
+            assertEquals(Jsoup.clean(s, Safelist.basic()), ClassOfInterest.clean(s), s);
+        }
+    }
+
+    @Test
+    void cleanMatchesJsoupOnRandomText() {
+        String[] tokens = {" ", "  ", "\t", "+++", "foo", "Bar.", "\"", "'", "[]", "{@code x}", "=", "*", "<p>", "&", ">", "\u00E9", "\u00A0"};
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            StringBuilder b = new StringBuilder();
+            for (int n = random.nextInt(12); n > 0; n--) {
+                b.append(tokens[random.nextInt(tokens.length)]);
+            }
+            String s = b.toString();
+            assertEquals(Jsoup.clean(s, Safelist.basic()), ClassOfInterest.clean(s), s);
+        }
+    }
+
+    @Test
+    void documentationIsTheFirstParagraph() {
+        assertNull(ClassOfInterest.toDocumentation(null));
+        assertEquals("", ClassOfInterest.toDocumentation(""));
+        assertEquals(Jsoup.clean("+++Does a thing.+++ +++Really.+++ ", Safelist.basic()),
+                ClassOfInterest.toDocumentation("Does a thing.\nReally.\n@since 1.0\n\nMore details."));
+        assertEquals(Jsoup.clean("+++Extends+++ jenkinsdoc:hudson.model.Job[] +++for 'jobs'.+++ ", Safelist.basic()),
+                ClassOfInterest.toDocumentation("Extends {@link hudson.model.Job} for 'jobs'.\n"));
+    }
+}
@@ -0,0 +1,84 @@
+package org.jenkinsci.extension_indexer;
+
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactDescriptorException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * In-process resolution against a {@code file:} repository, which has to give up on a plugin whose POM is
+ * incomplete instead of returning a classpath with only the core on it.
+ */
+class DependencyResolverTest {
+    private static final Module.CoreModule CORE = new Module.CoreModule("2.400");
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void resolvesPluginWithoutDependencies() throws Exception {
+        Path remote = createRemote();
+        deploy(remote, "org.example:leaf:1.0", "pom", pom("org.example", "leaf", "1.0", ""));
+
+        List<File> classPath = createResolver(remote).resolveInProcess(plugin("org.example:leaf:1.0"), CORE);
+
+        assertEquals(1, classPath.size());
+        assertEquals("jenkins-core-2.400.jar", classPath.get(0).getName());
+    }
+
+    @Test
+    void failsOnMissingPom() throws Exception {
+        Path remote = createRemote();
+
+        assertThrows(ArtifactDescriptorException.class,
+                () -> createResolver(remote).resolveInProcess(plugin("org.example:missing:1.0"), CORE));
+    }
+
+    @Test
+    void failsOnMissingParent() throws Exception {
+        Path remote = createRemote();
+        deploy(remote, "org.example:orphan:1.0", "pom", pom("org.example", "orphan", "1.0",
+                "<parent><groupId>org.example</groupId><artifactId>gone</artifactId><version>1.0</version></parent>"));
+
+        assertThrows(ArtifactDescriptorException.class,
+                () -> createResolver(remote).resolveInProcess(plugin("org.example:orphan:1.0"), CORE));
+    }
+
+    private Path createRemote() throws IOException {
+        Path remote = Files.createDirectories(tmp.resolve("remote"));
+        deploy(remote, CORE.gav, "jar", "not really a jar");
+        return remote;
+    }
+
+    private DependencyResolver createResolver(Path remote) {
+        return new DependencyResolver(tmp.resolve("local").toFile(), false, 0,
+                new RemoteRepository.Builder("test", "default", remote.toUri().toString()).build());
+    }
+
+    private static Module plugin(String gav) {
+        return new Module.PluginModule(gav, "https://plugins.jenkins.io/", "Test", null);
+    }
+
+    private static String pom(String groupId, String artifactId, String version, String parent) {
+        return "<project><modelVersion>4.0.0</modelVersion>" + parent
+                + "<groupId>" + groupId + "</groupId><artifactId>" + artifactId + "</artifactId><version>" + version + "</version>"
+                + "</project>";
+    }
+
+    private static void deploy(Path remote, String gav, String extension, String content) throws IOException {
+        String[] splitGav = gav.split(":");
+        Path dir = remote.resolve(splitGav[0].replace('.', '/')).resolve(splitGav[1]).resolve(splitGav[2]);
+        Files.createDirectories(dir);
+        Files.writeString(dir.resolve(splitGav[1] + "-" + splitGav[2] + "." + extension), content, StandardCharsets.UTF_8);
+    }
+}
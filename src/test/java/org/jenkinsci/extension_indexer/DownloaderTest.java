@@ -0,0 +1,53 @@
+package org.jenkinsci.extension_indexer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileNotFoundException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@code file:} URLs, as a local update center has, don't go through the HTTP client.
+ */
+class DownloaderTest {
+    @TempDir
+    Path tmp;
+
+    @Test
+    void downloadsFileUrl() throws Exception {
+        URL url = createSource("plugin.hpi", "not really a plugin");
+        Path file = tmp.resolve("plugin.hpi.copy");
+
+        assertEquals(19L, Downloader.download(url, file, false));
+        assertEquals("not really a plugin", Files.readString(file, StandardCharsets.UTF_8));
+        assertFalse(Files.exists(tmp.resolve("plugin.hpi.copy.tmp")));
+    }
+
+    @Test
+    void downloadsFileUrlIfModified() throws Exception {
+        URL url = createSource("update-center.json", "{}");
+        Path file = tmp.resolve("cache/update-center.json");
+
+        assertEquals(2L, Downloader.downloadIfModified(url, file));
+        assertEquals("{}", Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void failsOnMissingFile() {
+        assertThrows(FileNotFoundException.class,
+                () -> Downloader.download(tmp.resolve("missing.hpi").toUri().toURL(), tmp.resolve("copy.hpi"), false));
+    }
+
+    private URL createSource(String name, String content) throws Exception {
+        Path source = tmp.resolve(name);
+        Files.writeString(source, content, StandardCharsets.UTF_8);
+        return source.toUri().toURL();
+    }
+}